@@ -0,0 +1,84 @@
+package com.example.productorder;
+
+import com.example.productorder.order.domain.NewOrderDetailInfo;
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.OrderPricingPlan;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BenchmarkData {
+
+    public static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    //products are shared by order lines so orders with many lines do not need as many price histories
+    private static final int MAX_PRODUCTS = 10;
+
+    public static Set<Price> preparePrices(int pricesCount) {
+        Random random = new Random(pricesCount);
+        Set<Price> prices = new HashSet<>();
+        for (int i = 0; i < pricesCount; i++) {
+            prices.add(Price.builder()
+                            .id((long) i)
+                            .fromDate(FIRST_PRICE_DATE.plusHours(i))
+                            .price(BigDecimal.valueOf(100 + random.nextInt(100_000), 2))
+                            .build());
+        }
+        return prices;
+    }
+
+    public static LocalDateTime lastPriceDate(int pricesCount) {
+        return FIRST_PRICE_DATE.plusHours(pricesCount - 1);
+    }
+
+    public static List<Product> prepareProducts(int orderLines, int pricesCount) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < Math.min(orderLines, MAX_PRODUCTS); i++) {
+            products.add(Product.builder()
+                                .id((long) i)
+                                .name("Product " + i)
+                                .prices(preparePrices(pricesCount))
+                                .build());
+        }
+        return products;
+    }
+
+    public static Order prepareOrder(List<Product> products, int orderLines, LocalDateTime orderDate) {
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        for (int i = 0; i < orderLines; i++) {
+            Product product = products.get(i % products.size());
+            orderDetails.add(OrderDetail.builder()
+                                        .id((long) i)
+                                        .product(product)
+                                        .price(product.getPriceTimeline().lower(orderDate))
+                                        .quantity(i + 1L)
+                                        .build());
+        }
+        return Order.builder()
+                    .email("customer@benchmark.test")
+                    .orderDate(orderDate)
+                    .orderDetail(orderDetails)
+                    .build();
+    }
+
+    public static OrderPricingPlan preparePricingPlan(List<Product> products, int orderLines) {
+        List<NewOrderDetailInfo> orderDetails = new ArrayList<>();
+        for (int i = 0; i < orderLines; i++) {
+            orderDetails.add(NewOrderDetailInfo.builder()
+                                               .productName(products.get(i % products.size()).getName())
+                                               .quantity(i + 1L)
+                                               .build());
+        }
+        return OrderPricingPlan.builder()
+                               .email("customer@benchmark.test")
+                               .orderDetails(orderDetails)
+                               .products(products.stream().collect(Collectors.toMap(Product::getName, Function.identity())))
+                               .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.productorder.order.journal;
+
+import com.example.productorder.ProductOrderApplication;
+import com.example.productorder.order.domain.JournaledOrder;
+import com.example.productorder.order.domain.JournaledOrderDetail;
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.service.OrderService;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares accepting an order by appending it to the journal with saving it to the database straight away.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class OrderJournalBenchmark {
+
+    private static final LocalDateTime FIRST_ORDER_DATE = LocalDateTime.of(2019, 1, 1, 0, 0);
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @State(Scope.Benchmark)
+    public static class JournalState {
+
+        @Param({"true", "false"})
+        private boolean fsync;
+
+        private Path directory;
+        private OrderJournal orderJournal;
+        private byte[] payload;
+
+        @Setup
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("order-journal-benchmark");
+            orderJournal = new OrderJournal(directory, SEGMENT_SIZE, fsync);
+            payload = new ObjectMapper().findAndRegisterModules()
+                                        .writeValueAsBytes(JournaledOrder.builder()
+                                                                         .ingestionId("a5b8c3e2-6f0d-4c1b-9a7e-2d4f6b8c0e1a")
+                                                                         .email("customer@benchmark.test")
+                                                                         .orderDate(FIRST_ORDER_DATE)
+                                                                         .total(new BigDecimal("21.00"))
+                                                                         .orderDetails(Collections.singletonList(JournaledOrderDetail.builder()
+                                                                                                                                     .productName("Product 0")
+                                                                                                                                     .price(new BigDecimal("10.50"))
+                                                                                                                                     .priceFromDate(FIRST_ORDER_DATE)
+                                                                                                                                     .quantity(2L)
+                                                                                                                                     .build()))
+                                                                         .build());
+        }
+
+        //marks entries applied like the projector does, so segments of finished iterations are deleted, only entries
+        //written before the journal was opened are read back, so it is reopened like on restart
+        @TearDown(Level.Iteration)
+        public void compact() throws IOException {
+            orderJournal.close();
+            orderJournal = new OrderJournal(directory, SEGMENT_SIZE, fsync);
+            orderJournal.applied(orderJournal.readUnapplied().stream().map(OrderJournal.Entry::getPosition).collect(Collectors.toList()));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            orderJournal.close();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DatabaseState {
+
+        private final AtomicLong orderCounter = new AtomicLong();
+
+        private ConfigurableApplicationContext context;
+        private OrderService orderService;
+        private Product product;
+
+        @Setup
+        public void setUp() {
+            context = new SpringApplicationBuilder(ProductOrderApplication.class).web(WebApplicationType.NONE)
+                                                                                 .properties("init.data=false", "logging.level.root=WARN")
+                                                                                 .run();
+            orderService = context.getBean(OrderService.class);
+            product = context.getBean(ProductService.class)
+                             .save(Product.builder()
+                                          .name("Product 0")
+                                          .prices(Collections.singleton(Price.builder().fromDate(FIRST_ORDER_DATE.minusYears(1)).price(new BigDecimal("10.50")).build()))
+                                          .build());
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+
+        //every order gets its own date, so none of them is rejected as already placed
+        Order nextOrder() {
+            Price price = product.getPrices().iterator().next();
+            return Order.builder()
+                        .email("customer@benchmark.test")
+                        .orderDate(FIRST_ORDER_DATE.plusSeconds(orderCounter.getAndIncrement()))
+                        .orderDetail(Collections.singleton(OrderDetail.builder().product(product).price(price).quantity(2L).build()))
+                        .build();
+        }
+    }
+
+    @Benchmark
+    public long appendToJournal(JournalState state) {
+        return state.orderJournal.append(state.payload);
+    }
+
+    @Benchmark
+    public Order saveToDatabase(DatabaseState state) {
+        return state.orderService.saveIfNotPlaced(state.nextOrder()).orElseThrow(IllegalStateException::new);
+    }
+}
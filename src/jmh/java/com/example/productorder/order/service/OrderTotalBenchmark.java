@@ -0,0 +1,57 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderPricingPlan;
+import com.example.productorder.product.domain.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.productorder.BenchmarkData.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderTotalBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int orderLines;
+
+    @Param({"1", "1000", "100000"})
+    private int pricesCount;
+
+    //pricing methods do not touch repositories, validator nor entity manager
+    private final OrderService orderService = new OrderService(null, null, null, null, null, null, null, null);
+
+    private Order order;
+    private OrderPricingPlan pricingPlan;
+    private LocalDateTime orderDate;
+    private LocalDateTime whatIfDate;
+
+    @Setup
+    public void setUp() {
+        orderDate = lastPriceDate(pricesCount).plusDays(1);
+        whatIfDate = FIRST_PRICE_DATE.plusHours(pricesCount / 2).plusMinutes(30);
+        List<Product> products = prepareProducts(orderLines, pricesCount);
+        order = prepareOrder(products, orderLines, orderDate);
+        pricingPlan = preparePricingPlan(products, orderLines);
+    }
+
+    @Benchmark
+    public BigDecimal countOrderTotal() {
+        return orderService.countOrderTotal(order.getOrderDetail());
+    }
+
+    @Benchmark
+    public BigDecimal countOrderTotalIfItWasPlacedOnSpecificDate() {
+        return orderService.countOrderTotalIfItWasPlacedOnSpecificDate(order, whatIfDate);
+    }
+
+    @Benchmark
+    public Order createNewOrder() {
+        return orderService.createNewOrder(pricingPlan, orderDate);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.productorder.product.helper;
+
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceTimeline;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.productorder.BenchmarkData.FIRST_PRICE_DATE;
+import static com.example.productorder.BenchmarkData.preparePrices;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PriceHelperBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    private int pricesCount;
+
+    private Set<Price> prices;
+    private NavigableSet<Price> navigablePrices;
+    private PriceTimeline priceTimeline;
+    private Price searchedPrice;
+    private LocalDateTime searchedDate;
+
+    @Setup
+    public void setUp() {
+        prices = preparePrices(pricesCount);
+        navigablePrices = PriceHelper.convertToNavigableSet(prices);
+        priceTimeline = PriceTimeline.of(prices);
+        searchedDate = FIRST_PRICE_DATE.plusHours(pricesCount / 2).plusMinutes(30);
+        searchedPrice = Price.builder().fromDate(searchedDate).price(BigDecimal.ZERO).build();
+    }
+
+    @Benchmark
+    public NavigableSet<Price> convertToNavigableSet() {
+        return PriceHelper.convertToNavigableSet(prices);
+    }
+
+    @Benchmark
+    public PriceTimeline buildPriceTimeline() {
+        return PriceTimeline.of(prices);
+    }
+
+    @Benchmark
+    public Price lowerPriceFromNavigableSet() {
+        return navigablePrices.lower(searchedPrice);
+    }
+
+    @Benchmark
+    public Price lowerPriceFromPriceTimeline() {
+        return priceTimeline.lower(searchedDate);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.productorder.loadtest;
+
+import com.example.productorder.order.service.OrderService;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the request mix against the embedded server, run with ./gradlew loadTest, see {@link LoadTestSettings} for parameters.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"init.data=false", "logging.level.com.example.productorder=WARN"})
+public class LoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LoadTestSettings settings = new LoadTestSettings();
+
+    @Test
+    public void shouldReplayRequestMix() throws Exception {
+        //given
+        LoadTestDataset dataset = LoadTestDataset.seed(settings, productService, orderService);
+        List<RequestTemplate> requestMix = readRequestMix();
+
+        //when
+        replay(requestMix, dataset, settings.getWarmupSeconds(), null);
+        LoadTestReport report = new LoadTestReport();
+        long measuredNanos = replay(requestMix, dataset, settings.getDurationSeconds(), report);
+        report.write(settings, measuredNanos, objectMapper);
+
+        //then
+        LOGGER.info("Load test report written to {}", new File(settings.getReport()).getAbsolutePath());
+        assertThat(new File(settings.getReport())).exists();
+    }
+
+    private List<RequestTemplate> readRequestMix() throws IOException {
+        File requestMixFile = new File(settings.getRequestMix());
+        try (InputStream requestMix = requestMixFile.exists() ? new FileInputStream(requestMixFile) : new ClassPathResource(settings.getRequestMix()).getInputStream()) {
+            return RequestTemplate.read(requestMix, objectMapper);
+        }
+    }
+
+    private long replay(List<RequestTemplate> requestMix, LoadTestDataset dataset, int seconds, LoadTestReport report) throws Exception {
+        long intervalNanos = settings.getRatePerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1) / settings.getRatePerSecond() : 0;
+        AtomicLong tickets = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService clients = Executors.newFixedThreadPool(settings.getClients());
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < settings.getClients(); i++) {
+            results.add(clients.submit(() -> {
+                while (true) {
+                    //with a target rate every request has its slot, latency counts from the slot so queueing is not hidden
+                    long scheduled = intervalNanos > 0 ? start + tickets.getAndIncrement() * intervalNanos : System.nanoTime();
+                    if (scheduled >= end) {
+                        return null;
+                    }
+                    long waitNanos = scheduled - System.nanoTime();
+                    if (waitNanos > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+
+                    RequestTemplate request = pick(requestMix);
+                    int status = send(request.getMethod(), dataset.resolve(request.getPath()), dataset.resolve(request.getBody()));
+                    if (report != null) {
+                        report.record(request.getName(), status, System.nanoTime() - scheduled);
+                    }
+                }
+            }));
+        }
+        clients.shutdown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private RequestTemplate pick(List<RequestTemplate> requestMix) {
+        int weight = ThreadLocalRandom.current().nextInt(requestMix.stream().mapToInt(RequestTemplate::getWeight).sum());
+        for (RequestTemplate request : requestMix) {
+            weight -= request.getWeight();
+            if (weight < 0) {
+                return request;
+            }
+        }
+        return requestMix.get(requestMix.size() - 1);
+    }
+
+    private int send(String method, String path, String body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream requestBody = connection.getOutputStream()) {
+                    requestBody.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            //responses are read to the end so kept alive connections can be reused
+            try (InputStream responseBody = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (responseBody != null) {
+                    StreamUtils.drain(responseBody);
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.productorder.loadtest;
+
+import com.example.productorder.order.domain.NewOrderDetailInfo;
+import com.example.productorder.order.domain.NewOrderInfo;
+import com.example.productorder.order.service.OrderService;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.service.ProductService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic products and orders seeded through the services, placeholders of the request mix are filled with them.
+ */
+public class LoadTestDataset {
+
+    private static final DateTimeFormatter PATH_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int ORDERS_PER_BATCH = 500;
+    private static final Pattern PRODUCT_PLACEHOLDER = Pattern.compile("\\{product}");
+
+    private final List<String> productNames = new ArrayList<>();
+    private final List<String> orderEmails = new ArrayList<>();
+    private final List<LocalDateTime> orderDates = new ArrayList<>();
+    private final AtomicLong uniqueEmails = new AtomicLong();
+    private LocalDateTime lastPriceDate = FIRST_PRICE_DATE;
+
+    public static LoadTestDataset seed(LoadTestSettings settings, ProductService productService, OrderService orderService) {
+        LoadTestDataset dataset = new LoadTestDataset();
+        Random random = new Random(settings.getProducts());
+
+        for (int i = 0; i < settings.getProducts(); i++) {
+            Set<Price> prices = new HashSet<>();
+            for (int j = 0; j < settings.getPricesPerProduct(); j++) {
+                prices.add(Price.builder()
+                                .fromDate(FIRST_PRICE_DATE.plusDays(30L * j))
+                                .price(BigDecimal.valueOf(100 + random.nextInt(100_000), 2))
+                                .build());
+            }
+            String productName = "load-product-" + i;
+            productService.save(Product.builder()
+                                       .name(productName)
+                                       .prices(prices)
+                                       .build());
+            dataset.productNames.add(productName);
+        }
+        dataset.lastPriceDate = FIRST_PRICE_DATE.plusDays(30L * (settings.getPricesPerProduct() - 1));
+
+        //every batch gets its own order date so emails only have to be unique within a batch
+        LocalDateTime firstOrderDate = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        for (int batch = 0; batch * ORDERS_PER_BATCH < settings.getOrders(); batch++) {
+            LocalDateTime orderDate = firstOrderDate.plusSeconds(batch);
+            List<NewOrderInfo> newOrderInfos = new ArrayList<>();
+            for (int i = batch * ORDERS_PER_BATCH; i < Math.min((batch + 1) * ORDERS_PER_BATCH, settings.getOrders()); i++) {
+                List<NewOrderDetailInfo> productsToOrder = new ArrayList<>();
+                for (int line = 0; line < settings.getLinesPerOrder(); line++) {
+                    productsToOrder.add(NewOrderDetailInfo.builder()
+                                                          .productName(dataset.productNames.get(random.nextInt(dataset.productNames.size())))
+                                                          .quantity(1L + random.nextInt(10))
+                                                          .build());
+                }
+                String email = "customer" + i + "@load.test";
+                newOrderInfos.add(NewOrderInfo.builder()
+                                              .email(email)
+                                              .productsToOrder(productsToOrder)
+                                              .build());
+                dataset.orderEmails.add(email);
+                dataset.orderDates.add(orderDate);
+            }
+            orderService.createNewOrders(newOrderInfos, orderDate);
+        }
+
+        return dataset;
+    }
+
+    /**
+     * Fills {product}, {email}, {orderDate}, {date}, {uniqueEmail} and {now} placeholders, one random order per call.
+     * Every {product} is drawn on its own, so e.g. an order body with two of them usually orders two products.
+     */
+    public String resolve(String template) {
+        if (template == null) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int order = random.nextInt(orderEmails.size());
+        long priceHistoryHours = ChronoUnit.HOURS.between(FIRST_PRICE_DATE, lastPriceDate) + 24 * 365;
+        return replaceProducts(template, random).replace("{email}", orderEmails.get(order))
+                                                .replace("{orderDate}", orderDates.get(order).format(PATH_DATE_FORMAT))
+                                                .replace("{date}", FIRST_PRICE_DATE.plusHours(1 + random.nextLong(priceHistoryHours)).format(PATH_DATE_FORMAT))
+                                                .replace("{uniqueEmail}", "load" + uniqueEmails.incrementAndGet() + "@load.test")
+                                                .replace("{now}", LocalDateTime.now().toString());
+    }
+
+    private String replaceProducts(String template, Random random) {
+        Matcher matcher = PRODUCT_PLACEHOLDER.matcher(template);
+        StringBuffer resolved = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(productNames.get(random.nextInt(productNames.size()))));
+        }
+        return matcher.appendTail(resolved).toString();
+    }
+}
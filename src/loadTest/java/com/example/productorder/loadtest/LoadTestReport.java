@@ -0,0 +1,89 @@
+package com.example.productorder.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and status codes per request name, written as JSON with sorted keys so reports of two builds diff cleanly.
+ */
+public class LoadTestReport {
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    public void record(String name, int status, long latencyNanos) {
+        endpoints.computeIfAbsent(name, key -> new EndpointStats()).record(status, latencyNanos);
+    }
+
+    public void write(LoadTestSettings settings, long measuredNanos, ObjectMapper objectMapper) throws IOException {
+        double measuredSeconds = measuredNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        Map<String, Object> report = new TreeMap<>();
+        report.put("clients", settings.getClients());
+        report.put("targetRatePerSecond", settings.getRatePerSecond());
+        report.put("durationSeconds", measuredSeconds);
+        report.put("products", settings.getProducts());
+        report.put("pricesPerProduct", settings.getPricesPerProduct());
+        report.put("orders", settings.getOrders());
+
+        Map<String, Object> endpointReports = new TreeMap<>();
+        long requests = 0;
+        for (Map.Entry<String, EndpointStats> endpoint : endpoints.entrySet()) {
+            endpointReports.put(endpoint.getKey(), endpoint.getValue().summary(measuredSeconds));
+            requests += endpoint.getValue().count();
+        }
+        report.put("requests", requests);
+        report.put("throughputPerSecond", requests / measuredSeconds);
+        report.put("endpoints", endpointReports);
+
+        File reportFile = new File(settings.getReport());
+        if (reportFile.getParentFile() != null) {
+            reportFile.getParentFile().mkdirs();
+        }
+        objectMapper.copy()
+                    .enable(SerializationFeature.INDENT_OUTPUT)
+                    .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValue(reportFile, report);
+    }
+
+    private static class EndpointStats {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        synchronized void record(int status, long latencyNanos) {
+            latencies.add(latencyNanos);
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        synchronized long count() {
+            return latencies.size();
+        }
+
+        synchronized Map<String, Object> summary(double measuredSeconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Object> summary = new TreeMap<>();
+            summary.put("count", sorted.length);
+            summary.put("errors", statuses.entrySet().stream().filter(status -> status.getKey() >= 500 || status.getKey() < 0).mapToLong(Map.Entry::getValue).sum());
+            summary.put("statuses", statuses);
+            summary.put("throughputPerSecond", sorted.length / measuredSeconds);
+            summary.put("p50Ms", percentileMillis(sorted, 0.50));
+            summary.put("p95Ms", percentileMillis(sorted, 0.95));
+            summary.put("p99Ms", percentileMillis(sorted, 0.99));
+            summary.put("maxMs", percentileMillis(sorted, 1.0));
+            return summary;
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
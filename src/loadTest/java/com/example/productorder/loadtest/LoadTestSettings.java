@@ -0,0 +1,63 @@
+package com.example.productorder.loadtest;
+
+/**
+ * Load test parameters, every one can be overridden with a -DloadTest.&lt;name&gt;=&lt;value&gt; system property.
+ */
+public class LoadTestSettings {
+
+    private final int clients = intProperty("clients", 8);
+    //0 means as fast as clients can go
+    private final int ratePerSecond = intProperty("rate", 50);
+    private final int warmupSeconds = intProperty("warmupSeconds", 5);
+    private final int durationSeconds = intProperty("durationSeconds", 30);
+    private final int products = intProperty("products", 100);
+    private final int pricesPerProduct = intProperty("pricesPerProduct", 50);
+    private final int orders = intProperty("orders", 1000);
+    private final int linesPerOrder = intProperty("linesPerOrder", 3);
+    private final String requestMix = System.getProperty("loadTest.requestMix", "request-mix.jsonl");
+    private final String report = System.getProperty("loadTest.report", "build/reports/loadTest/report.json");
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty("loadTest." + name, String.valueOf(defaultValue)));
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getProducts() {
+        return products;
+    }
+
+    public int getPricesPerProduct() {
+        return pricesPerProduct;
+    }
+
+    public int getOrders() {
+        return orders;
+    }
+
+    public int getLinesPerOrder() {
+        return linesPerOrder;
+    }
+
+    public String getRequestMix() {
+        return requestMix;
+    }
+
+    public String getReport() {
+        return report;
+    }
+}
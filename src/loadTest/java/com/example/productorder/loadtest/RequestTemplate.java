@@ -0,0 +1,71 @@
+package com.example.productorder.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of the request mix, path and body may contain placeholders resolved by {@link LoadTestDataset}.
+ */
+public class RequestTemplate {
+
+    private final String name;
+    private final String method;
+    private final String path;
+    private final String body;
+    private final int weight;
+
+    private RequestTemplate(String name, String method, String path, String body, int weight) {
+        this.name = name;
+        this.method = method;
+        this.path = path;
+        this.body = body;
+        this.weight = weight;
+    }
+
+    public static List<RequestTemplate> read(InputStream requestMix, ObjectMapper objectMapper) throws IOException {
+        List<RequestTemplate> templates = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(requestMix, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode request = objectMapper.readTree(line);
+                templates.add(new RequestTemplate(request.path("name").asText(request.path("path").asText()),
+                                                  request.path("method").asText("GET"),
+                                                  request.path("path").asText(),
+                                                  request.hasNonNull("body") ? objectMapper.writeValueAsString(request.get("body")) : null,
+                                                  request.path("weight").asInt(1)));
+            }
+        }
+        return templates;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
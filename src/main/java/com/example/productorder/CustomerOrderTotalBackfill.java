@@ -0,0 +1,38 @@
+package com.example.productorder;
+
+import com.example.productorder.order.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates lifetime totals of customers whose orders were persisted before the totals existed, without them
+ * the orders of the customer are not listed.
+ */
+@Component
+@Order(OrderTotalBackfill.ORDER + 1) //sums totals of orders, so it runs once they are backfilled
+@ConditionalOnProperty(name = "order.customer-total-backfill.enabled", matchIfMissing = true)
+public class CustomerOrderTotalBackfill implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerOrderTotalBackfill.class);
+
+    private final OrderService orderService;
+
+    @Autowired
+    public CustomerOrderTotalBackfill(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    public void run(ApplicationArguments args) {
+        int backfilledCustomers = orderService.backfillCustomerOrderTotals();
+
+        if (backfilledCustomers > 0) {
+            LOGGER.info("Order totals backfilled for {} customers", backfilledCustomers);
+        }
+    }
+}
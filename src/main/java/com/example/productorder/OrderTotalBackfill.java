@@ -0,0 +1,43 @@
+package com.example.productorder;
+
+import com.example.productorder.order.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts and stores total of orders persisted before the total column existed.
+ */
+@Component
+@Order(OrderTotalBackfill.ORDER)
+@ConditionalOnProperty(name = "order.total-backfill.enabled", matchIfMissing = true)
+public class OrderTotalBackfill implements ApplicationRunner {
+
+    static final int ORDER = 0;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderTotalBackfill.class);
+
+    private final OrderService orderService;
+
+    @Autowired
+    public OrderTotalBackfill(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    public void run(ApplicationArguments args) {
+        int backfilledOrders = 0;
+        int backfilledChunk;
+        while ((backfilledChunk = orderService.backfillOrderTotals()) > 0) {
+            backfilledOrders += backfilledChunk;
+        }
+
+        if (backfilledOrders > 0) {
+            LOGGER.info("Total backfilled for {} orders", backfilledOrders);
+        }
+    }
+}
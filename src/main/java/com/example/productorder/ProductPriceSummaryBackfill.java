@@ -0,0 +1,40 @@
+package com.example.productorder;
+
+import com.example.productorder.product.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sets current price and first price date of products persisted before these columns existed, without them
+ * the current price is not found and the products can not be ordered.
+ */
+@Component
+@ConditionalOnProperty(name = "product.price-summary-backfill.enabled", matchIfMissing = true)
+public class ProductPriceSummaryBackfill implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductPriceSummaryBackfill.class);
+
+    private final ProductService productService;
+
+    @Autowired
+    public ProductPriceSummaryBackfill(ProductService productService) {
+        this.productService = productService;
+    }
+
+    public void run(ApplicationArguments args) {
+        int backfilledProducts = 0;
+        int backfilledChunk;
+        while ((backfilledChunk = productService.backfillPriceSummaries()) > 0) {
+            backfilledProducts += backfilledChunk;
+        }
+
+        if (backfilledProducts > 0) {
+            LOGGER.info("Price summary backfilled for {} products", backfilledProducts);
+        }
+    }
+}
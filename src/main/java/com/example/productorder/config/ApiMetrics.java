@@ -0,0 +1,22 @@
+package com.example.productorder.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ApiMetrics {
+
+    public static final String OUTCOME_COUNTER = "api.outcomes";
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ApiMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void countOutcome(String operation, String outcome) {
+        meterRegistry.counter(OUTCOME_COUNTER, "operation", operation, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.productorder.config;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Moves sequences of {@link PooledSequenceGenerator} past ids already in the tables of their entities. Rows persisted
+ * while all ids came from the shared hibernate_sequence keep their ids, a sequence created next to them starts at 1
+ * and would hand the same ids out again.
+ */
+@Component
+public class IdSequenceAlignment {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdSequenceAlignment.class);
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    @Autowired
+    public IdSequenceAlignment(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    }
+
+    //context is refreshed before the web server starts and before application runners insert their data
+    @EventListener(ContextRefreshedEvent.class)
+    public void alignSequences() {
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        try (Session session = sessionFactory.openSession()) {
+            session.doWork(connection -> {
+                for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+                    if (persister.getIdentifierGenerator() instanceof PooledSequenceGenerator && persister instanceof AbstractEntityPersister) {
+                        alignSequence(connection, dialect, (AbstractEntityPersister) persister,
+                                      ((PooledSequenceGenerator) persister.getIdentifierGenerator()).getDatabaseStructure());
+                    }
+                }
+            });
+        }
+    }
+
+    private static void alignSequence(Connection connection, Dialect dialect, AbstractEntityPersister persister, DatabaseStructure sequence) throws SQLException {
+        if (!sequence.isPhysicalSequence()) {
+            return;
+        }
+        Long maxId = queryLong(connection, "select max(" + persister.getIdentifierColumnNames()[0] + ") from " + persister.getTableName());
+        if (maxId == null) {
+            return;
+        }
+        //pooled optimizer hands out ids from (value - allocation size, value], so the next value has to leave the whole
+        //first allocation above the max id
+        long firstValue = maxId + sequence.getIncrementSize();
+        if (queryLong(connection, dialect.getSequenceNextValString(sequence.getName())) < firstValue) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("alter sequence " + sequence.getName() + " restart with " + firstValue);
+            }
+            LOGGER.info("Sequence {} moved past id {} of {}", sequence.getName(), maxId, persister.getTableName());
+        }
+    }
+
+    private static Long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            long value = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : value;
+        }
+    }
+}
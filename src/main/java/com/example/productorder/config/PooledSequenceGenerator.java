@@ -0,0 +1,30 @@
+package com.example.productorder.config;
+
+import org.hibernate.MappingException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator with the pooled optimizer: one sequence call reserves ids for allocation size inserts.
+ * Allocation size is set on the entity with {@link #INCREMENT_PARAM}, when not set {@link #DEFAULT_ALLOCATION_SIZE}
+ * is used. Sequences start after ids already in the tables, see {@link IdSequenceAlignment}.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "com.example.productorder.config.PooledSequenceGenerator";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        if (!params.containsKey(INCREMENT_PARAM)) {
+            params.setProperty(INCREMENT_PARAM, String.valueOf(DEFAULT_ALLOCATION_SIZE));
+        }
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
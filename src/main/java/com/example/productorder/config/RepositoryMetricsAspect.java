@@ -0,0 +1,60 @@
+package com.example.productorder.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call of application repositories, tagged by repository interface, method and thrown exception.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    public static final String REPOSITORY_TIMER = "repository.invocations";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object timeRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "None";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(REPOSITORY_TIMER)
+                             .tag("repository", repositoryName(joinPoint.getThis()))
+                             .tag("method", joinPoint.getSignature().getName())
+                             .tag("exception", exception)
+                             .register(meterRegistry));
+        }
+    }
+
+    private String repositoryName(Object repository) {
+        return repositoryNames.computeIfAbsent(repository.getClass(), repositoryClass -> Arrays.stream(AopProxyUtils.proxiedUserInterfaces(repository))
+                                                                                               .filter(Repository.class::isAssignableFrom)
+                                                                                               .filter(repositoryInterface -> !repositoryInterface.getName().startsWith("org.springframework"))
+                                                                                               .map(Class::getSimpleName)
+                                                                                               .findFirst()
+                                                                                               .orElse(repositoryClass.getSimpleName()));
+    }
+}
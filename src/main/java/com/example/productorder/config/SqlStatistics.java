@@ -0,0 +1,59 @@
+package com.example.productorder.config;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL statements, rows and database time counted for the current thread, e.g. for one HTTP request.
+ * Statements run on threads without started counting (background jobs) are not counted, counts of a request
+ * are resumed on the thread writing its streamed response.
+ */
+public class SqlStatistics {
+
+    private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<>();
+
+    public static Counts start() {
+        Counts counts = new Counts();
+        COUNTS.set(counts);
+        return counts;
+    }
+
+    static void resume(Counts counts) {
+        COUNTS.set(counts);
+    }
+
+    public static Counts stop() {
+        Counts counts = COUNTS.get();
+        COUNTS.remove();
+        return counts;
+    }
+
+    static void statementExecuted(long nanos) {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.statements++;
+            counts.nanos += nanos;
+        }
+    }
+
+    static void rowRead() {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.rows++;
+        }
+    }
+
+    @Getter
+    public static class Counts {
+
+        //batch is one statement, it is one round trip to the database
+        private long statements;
+        private long rows;
+        private long nanos;
+
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+}
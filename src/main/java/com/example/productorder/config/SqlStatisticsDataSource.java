@@ -0,0 +1,96 @@
+package com.example.productorder.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Data source counting executed statements, their time and read rows in {@link SqlStatistics}.
+ * Connections, statements and result sets are wrapped in proxies, all other calls go straight to the target.
+ */
+public class SqlStatisticsDataSource extends DelegatingDataSource {
+
+    public SqlStatisticsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, super.getConnection(username, password));
+    }
+
+    private static <T> T proxy(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            //Hibernate keeps statements and result sets in hash maps, proxy has to be equal only to itself
+            if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if (type == Connection.class) {
+                return proxyStatement(method, invoke(target, method, args));
+            }
+            if (type == ResultSet.class) {
+                return countRow(method, invoke(target, method, args));
+            }
+            if (method.getName().startsWith("execute")) {
+                long start = System.nanoTime();
+                try {
+                    return proxyResultSet(invoke(target, method, args));
+                } finally {
+                    SqlStatistics.statementExecuted(System.nanoTime() - start);
+                }
+            }
+            return proxyResultSet(invoke(target, method, args));
+        }));
+    }
+
+    //statement created by connection is proxied with the returned interface, e.g. PreparedStatement
+    private static Object proxyStatement(Method method, Object result) {
+        if (result instanceof Statement) {
+            return proxy(castType(method.getReturnType()), result);
+        }
+        return result;
+    }
+
+    //result sets of executeQuery, getResultSet and getGeneratedKeys
+    private static Object proxyResultSet(Object result) {
+        if (result instanceof ResultSet) {
+            return proxy(ResultSet.class, (ResultSet) result);
+        }
+        return result;
+    }
+
+    private static Object countRow(Method method, Object result) {
+        if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+            SqlStatistics.rowRead();
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> castType(Class<?> type) {
+        return (Class<Object>) type;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
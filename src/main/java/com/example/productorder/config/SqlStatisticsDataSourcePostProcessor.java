@@ -0,0 +1,21 @@
+package com.example.productorder.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source so statements of every request are counted by {@link SqlStatisticsFilter}.
+ */
+@Component
+public class SqlStatisticsDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof SqlStatisticsDataSource)) {
+            return new SqlStatisticsDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
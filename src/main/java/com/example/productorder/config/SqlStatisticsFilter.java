@@ -0,0 +1,222 @@
+package com.example.productorder.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts SQL statements, rows and database time of every request and records them in {@code sql.request.*} metrics
+ * tagged by method and uri, requests issuing more than {@code sql.statistics.warn-statements} statements
+ * (e.g. N+1 queries) are logged. With {@code sql.statistics.headers=true} (the {@code debug} profile) counts are
+ * also returned in {@code X-SQL-*} headers, counted until the response is committed.
+ * <p>
+ * Streamed responses (e.g. {@code GET /orders/export}) are written on an async thread, counting goes on there and
+ * the request is recorded once the response is complete.
+ */
+@Component
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String ROWS_HEADER = "X-SQL-Rows";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+
+    public static final String STATEMENTS_SUMMARY = "sql.request.statements";
+    public static final String ROWS_SUMMARY = "sql.request.rows";
+    public static final String TIME_TIMER = "sql.request.time";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlStatisticsFilter.class);
+
+    private final boolean headers;
+    private final long warnStatements;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public SqlStatisticsFilter(@Value("${sql.statistics.headers:false}") boolean headers,
+                               @Value("${sql.statistics.warn-statements:50}") long warnStatements,
+                               MeterRegistry meterRegistry) {
+        this.headers = headers;
+        this.warnStatements = warnStatements;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        SqlStatistics.Counts counts = SqlStatistics.start();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(SqlStatisticsFilter.class.getName(), new AsyncCountsInterceptor(counts));
+        try {
+            filterChain.doFilter(request, headers ? new HeadersResponseWrapper(response, counts) : response);
+        } finally {
+            SqlStatistics.stop();
+            if (!request.isAsyncStarted()) {
+                if (headers && !response.isCommitted()) {
+                    addHeaders(response, counts);
+                }
+                record(request, counts);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatistics.Counts counts) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", uri == null ? "UNKNOWN" : uri.toString());
+        meterRegistry.summary(STATEMENTS_SUMMARY, tags).record(counts.getStatements());
+        meterRegistry.summary(ROWS_SUMMARY, tags).record(counts.getRows());
+        meterRegistry.timer(TIME_TIMER, tags).record(counts.getNanos(), TimeUnit.NANOSECONDS);
+        if (counts.getStatements() > warnStatements) {
+            LOGGER.warn("{} {} issued {} SQL statements reading {} rows in {} ms, check it for N+1 queries!!!",
+                        request.getMethod(), request.getRequestURI(), counts.getStatements(), counts.getRows(), counts.getMillis());
+        }
+    }
+
+    private static void addHeaders(HttpServletResponse response, SqlStatistics.Counts counts) {
+        response.setHeader(STATEMENTS_HEADER, String.valueOf(counts.getStatements()));
+        response.setHeader(ROWS_HEADER, String.valueOf(counts.getRows()));
+        response.setHeader(TIME_HEADER, String.valueOf(counts.getMillis()));
+    }
+
+    //streamed response body is written on an async thread, its statements are added to the counts of the request
+    private class AsyncCountsInterceptor implements CallableProcessingInterceptor {
+
+        private final SqlStatistics.Counts counts;
+
+        private AsyncCountsInterceptor(SqlStatistics.Counts counts) {
+            this.counts = counts;
+        }
+
+        @Override
+        public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+            SqlStatistics.resume(counts);
+        }
+
+        @Override
+        public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+            SqlStatistics.stop();
+            HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+            if (headers && response != null && !response.isCommitted()) {
+                addHeaders(response, counts);
+            }
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            record(request.getNativeRequest(HttpServletRequest.class), counts);
+        }
+    }
+
+    //headers cannot be added once the body is written, they are added just before
+    private static class HeadersResponseWrapper extends HttpServletResponseWrapper {
+
+        private final SqlStatistics.Counts counts;
+
+        private HeadersResponseWrapper(HttpServletResponse response, SqlStatistics.Counts counts) {
+            super(response);
+            this.counts = counts;
+        }
+
+        //streamed responses get the stream before their statements run, headers are added on the first write
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return new HeadersOutputStream(super.getOutputStream());
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addHeadersIfNotCommitted();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addHeadersIfNotCommitted();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addHeadersIfNotCommitted();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addHeadersIfNotCommitted();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addHeadersIfNotCommitted();
+            super.sendRedirect(location);
+        }
+
+        private void addHeadersIfNotCommitted() {
+            if (!isCommitted()) {
+                addHeaders((HttpServletResponse) getResponse(), counts);
+            }
+        }
+
+        private class HeadersOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream outputStream;
+
+            private HeadersOutputStream(ServletOutputStream outputStream) {
+                this.outputStream = outputStream;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                addHeadersIfNotCommitted();
+                outputStream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                addHeadersIfNotCommitted();
+                outputStream.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                addHeadersIfNotCommitted();
+                outputStream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                addHeadersIfNotCommitted();
+                outputStream.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return outputStream.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                outputStream.setWriteListener(writeListener);
+            }
+        }
+    }
+}
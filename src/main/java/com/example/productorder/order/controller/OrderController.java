@@ -1,24 +1,40 @@
 package com.example.productorder.order.controller;
 
+import com.example.productorder.config.ApiMetrics;
 import com.example.productorder.order.domain.*;
 import com.example.productorder.order.helper.OrderHelper;
+import com.example.productorder.order.service.OrderIngestionService;
+import com.example.productorder.order.service.OrderRepricingService;
 import com.example.productorder.order.service.OrderService;
 import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -30,66 +46,281 @@ public class OrderController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OrderController.class);
 
+    static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final OrderService orderService;
     private final ProductService productService;
+    private final OrderRepricingService orderRepricingService;
+    private final OrderIngestionService orderIngestionService;
+    private final OrderIdempotencyCache orderIdempotencyCache;
+    private final ObjectMapper objectMapper;
+    private final ApiMetrics apiMetrics;
 
     @Autowired
-    public OrderController(OrderService orderService, ProductService productService) {
+    public OrderController(OrderService orderService, ProductService productService, OrderRepricingService orderRepricingService,
+                           OrderIngestionService orderIngestionService, OrderIdempotencyCache orderIdempotencyCache, ObjectMapper objectMapper,
+                           ApiMetrics apiMetrics) {
         this.orderService = orderService;
         this.productService = productService;
+        this.orderRepricingService = orderRepricingService;
+        this.orderIngestionService = orderIngestionService;
+        this.orderIdempotencyCache = orderIdempotencyCache;
+        this.objectMapper = objectMapper;
+        this.apiMetrics = apiMetrics;
     }
 
     @GetMapping("/orders")
-    @ApiOperation(value = "View  all orders between from and to dates", response = OrderInfo.class, responseContainer="List")
+    @ApiOperation(value = "View  all orders between from and to dates, paged by orderDate when limit or continuationToken is given", notes = "Token for the next page is returned in the " + CONTINUATION_TOKEN_HEADER + " header", response = OrderInfo.class, responseContainer="List")
     ResponseEntity<?> getOrders(@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "fromDate") LocalDateTime fromDate
             , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "toDate") LocalDateTime toDate
+            , @RequestParam(required = false, value = "limit") Integer limit
+            , @RequestParam(required = false, value = "continuationToken") String continuationToken
+    ) {
+
+        //to date cannot be before from date
+        if (fromDate != null && toDate != null && toDate.isBefore(fromDate)) {
+            LOGGER.info("DateFrom is greater then dateTo");
+            apiMetrics.countOutcome("getOrders", "date_range_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        if (limit == null && continuationToken == null) {
+            return ResponseEntity.ok(orderService.getOrderInfos(fromDate, toDate));
+        }
+
+        int pageSize = Optional.ofNullable(limit).orElse(DEFAULT_PAGE_SIZE);
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            LOGGER.info("Page limit out of range");
+            apiMetrics.countOutcome("getOrders", "page_limit_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        OrderCursor after;
+        try {
+            after = continuationToken == null ? null : OrderHelper.convertToOrderCursor(continuationToken);
+        } catch (IllegalArgumentException e) {
+            LOGGER.info("Invalid continuation token");
+            apiMetrics.countOutcome("getOrders", "continuation_token_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        OrderPage orderPage = orderService.getOrdersPage(fromDate, toDate, after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (orderPage.getNextCursor() != null) {
+            response.header(CONTINUATION_TOKEN_HEADER, OrderHelper.convertToContinuationToken(orderPage.getNextCursor()));
+        }
+
+        return response.body(orderPage.getOrders());
+    }
+
+    @GetMapping(value = "/orders/export", produces = "application/x-ndjson")
+    @ApiOperation(value = "Stream all orders between from and to dates, one JSON order per line", response = OrderInfo.class, responseContainer = "List")
+    ResponseEntity<StreamingResponseBody> exportOrders(@DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "fromDate") LocalDateTime fromDate
+            , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "toDate") LocalDateTime toDate
     ) {
 
         //to date cannot be before from date
         if (fromDate != null && toDate != null && toDate.isBefore(fromDate)) {
             LOGGER.info("DateFrom is greater then dateTo");
+            apiMetrics.countOutcome("exportOrders", "date_range_invalid");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                  .build();
         }
 
-        return ResponseEntity.ok(orderService.getOrders(fromDate, toDate)
-                                             .stream()
-                                             .map(order -> OrderHelper.convertToOrderInfo(order, orderService.countOrderTotal(order.getOrderDetail())))
-                                             .collect(Collectors.toList()));
+        ObjectWriter orderWriter = objectMapper.writerFor(OrderInfo.class)
+                                               .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody responseBody = outputStream -> orderService.exportOrders(fromDate, toDate, order -> {
+            try {
+                orderWriter.writeValue(outputStream, order);
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                             .body(responseBody);
     }
 
     @PostMapping("/orders")
-    @ApiOperation(value = "Create an order")
-    ResponseEntity<?> createOrder(@RequestBody @Valid NewOrderInfo newOrderInfo, BindingResult bindingResult) {
+    @ApiOperation(value = "Create an order", notes = "Retries with the same " + IDEMPOTENCY_KEY_HEADER + " header get the response of the first request without creating the order again. "
+            + "With asynchronous ingestion the order is saved later, 202 response points to its status")
+    ResponseEntity<?> createOrder(@RequestHeader(required = false, value = IDEMPOTENCY_KEY_HEADER) String idempotencyKey
+            , @RequestBody @Valid NewOrderInfo newOrderInfo, BindingResult bindingResult) {
+
+        if (idempotencyKey == null) {
+            return placeOrder(newOrderInfo, bindingResult);
+        }
 
-        LocalDateTime orderDate = LocalDateTime.now();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            LOGGER.info("Invalid idempotency key");
+            apiMetrics.countOutcome("createOrder", "idempotency_key_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
 
-        Optional<Order> existingOrder = orderService.getOrderByEmailAndDate(newOrderInfo.getEmail(), orderDate);
+        Optional<OrderIdempotencyCache.Response> response;
+        try {
+            response = orderIdempotencyCache.execute(idempotencyKey, newOrderInfo, () -> placeOrder(newOrderInfo, bindingResult));
+        } catch (TimeoutException e) {
+            LOGGER.info("Order with the same idempotency key is still being created");
+            apiMetrics.countOutcome("createOrder", "idempotent_request_in_progress");
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                                 .build();
+        }
+
+        if (!response.isPresent()) {
+            LOGGER.info("Idempotency key was already used for other order!!!");
+            apiMetrics.countOutcome("createOrder", "idempotency_key_reused");
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                                 .build();
+        }
+
+        if (response.get().isReplayed()) {
+            apiMetrics.countOutcome("createOrder", "idempotent_replay");
+            return ResponseEntity.status(response.get().getResponseEntity().getStatusCode())
+                                 .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                                 .body(response.get().getResponseEntity().getBody());
+        }
+
+        return response.get().getResponseEntity();
+    }
+
+    private ResponseEntity<?> placeOrder(NewOrderInfo newOrderInfo, BindingResult bindingResult) {
 
         if (bindingResult.hasErrors()) {
+            apiMetrics.countOutcome("createOrder", "validation_failed");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                  .body(bindingResult.getAllErrors().get(0).getDefaultMessage());
         }
 
-        if (existingOrder.isPresent()) {
+        OrderPricingPlan pricingPlan = orderService.prepareOrderPricingPlan(newOrderInfo);
+
+        if (!pricingPlan.allProductsExist()) {
+            LOGGER.info("At least one of the ordered products does not exist!!!");
+            apiMetrics.countOutcome("createOrder", "product_not_found");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        Order orderToSave = orderService.createNewOrder(pricingPlan, LocalDateTime.now());
+
+        if (orderIngestionService.isAsync()) {
+            return enqueueOrder(orderToSave);
+        }
+
+        Optional<Order> savedOrder = orderService.saveIfNotPlaced(orderToSave);
+
+        if (!savedOrder.isPresent()) {
             LOGGER.info("Order with such customer email and date already exists!!!");
+            apiMetrics.countOutcome("createOrder", "conflict");
             return ResponseEntity.status(HttpStatus.CONFLICT)
                                  .build();
         }
 
-        if (!productService.checkIfAllProductsExists(newOrderInfo.getProductsToOrder()
-                                                                 .stream()
-                                                                 .map(NewOrderDetailInfo::getProductName)
-                                                                 .collect(Collectors.toSet()))) {
-            LOGGER.info("At least one of the ordered products does not exist!!!");
+        return ResponseEntity.status(HttpStatus.CREATED).body(OrderHelper.convertToOrderInfo(savedOrder.get()));
+    }
+
+    private ResponseEntity<?> enqueueOrder(Order order) {
+
+        Optional<OrderIngestionInfo> ingestion = orderIngestionService.enqueue(order);
+
+        if (!ingestion.isPresent()) {
+            LOGGER.info("Order ingestion queue is full!!!");
+            apiMetrics.countOutcome("createOrder", "queue_full");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                 .header(HttpHeaders.RETRY_AFTER, "1")
+                                 .build();
+        }
+
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                                                                  .path("/orders/ingestions/{id}")
+                                                                  .buildAndExpand(ingestion.get().getId())
+                                                                  .toUri())
+                             .body(ingestion.get());
+    }
+
+    @GetMapping("/orders/ingestions/{id}")
+    @ApiOperation(value = "Check whether order accepted for asynchronous creation is already saved", response = OrderIngestionInfo.class)
+    ResponseEntity<?> getIngestion(@PathVariable("id") String id) {
+
+        Optional<OrderIngestionInfo> ingestion = orderIngestionService.getIngestion(id);
+
+        if (!ingestion.isPresent()) {
+            LOGGER.info("Order ingestion not found");
+            apiMetrics.countOutcome("getIngestion", "ingestion_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+
+        return ResponseEntity.ok(ingestion.get());
+    }
+
+    @GetMapping("/customers/{email}/orders")
+    @ApiOperation(value = "View orders of the customer sorted by orderDate with lifetime count and total of customer orders", notes = "Token for the next page is returned in the " + CONTINUATION_TOKEN_HEADER + " header", response = CustomerOrdersInfo.class)
+    ResponseEntity<?> getCustomerOrders(@PathVariable("email") String email
+            , @RequestParam(required = false, value = "limit") Integer limit
+            , @RequestParam(required = false, value = "continuationToken") String continuationToken
+    ) {
+
+        int pageSize = Optional.ofNullable(limit).orElse(DEFAULT_PAGE_SIZE);
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            LOGGER.info("Page limit out of range");
+            apiMetrics.countOutcome("getCustomerOrders", "page_limit_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        OrderCursor after;
+        try {
+            after = continuationToken == null ? null : OrderHelper.convertToOrderCursor(continuationToken);
+        } catch (IllegalArgumentException e) {
+            LOGGER.info("Invalid continuation token");
+            apiMetrics.countOutcome("getCustomerOrders", "continuation_token_invalid");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                  .build();
         }
 
-        Order savedOrderToSave = orderService.createNewOrder(newOrderInfo, orderDate);
-        OrderInfo savedOrderInfo = OrderHelper.convertToOrderInfo(orderService.save(savedOrderToSave), orderService.countOrderTotal(savedOrderToSave.getOrderDetail()));
+        //only the first page of the default size is cached, it is what is asked for most
+        Optional<CustomerOrdersInfo> customerOrders = after == null && pageSize == DEFAULT_PAGE_SIZE
+                ? orderService.getCachedCustomerOrders(email, pageSize)
+                : orderService.getCustomerOrders(email, after, pageSize);
+
+        if (!customerOrders.isPresent()) {
+            LOGGER.info("Customer orders not found");
+            apiMetrics.countOutcome("getCustomerOrders", "customer_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (customerOrders.get().getNextCursor() != null) {
+            response.header(CONTINUATION_TOKEN_HEADER, OrderHelper.convertToContinuationToken(customerOrders.get().getNextCursor()));
+        }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedOrderInfo);
+        return response.body(customerOrders.get());
+    }
+
+    @PostMapping("/orders/batch")
+    @ApiOperation(value = "Create many orders in one transaction, each order gets its own result", response = OrderBatchResult.class, responseContainer = "List")
+    ResponseEntity<?> createOrders(@RequestBody List<NewOrderInfo> newOrderInfos) {
+
+        List<OrderBatchResult> results = orderService.createNewOrders(newOrderInfos, LocalDateTime.now());
+        LOGGER.info("Orders batch processed: {} orders, {} created", results.size(), results.stream()
+                                                                                         .filter(result -> result.getStatus() == OrderBatchResult.Status.CREATED)
+                                                                                         .count());
+
+        return ResponseEntity.ok(results);
     }
 
     @GetMapping("/orders/{email}/{orderDate}/placed/{date}")
@@ -98,10 +329,19 @@ public class OrderController {
             , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @Valid @PathVariable("orderDate") LocalDateTime orderDate
             , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @Valid @PathVariable("date") LocalDateTime date) {
 
-        Optional<Order> existingOrder = orderService.getOrderByEmailAndDate(email, orderDate);
+        Optional<Long> existingOrderId = orderService.getOrderIdByEmailAndDate(email, orderDate);
+        Optional<Order> existingOrder = Optional.empty();
+        if (existingOrderId.isPresent()) {
+            Optional<OrderInfo> cachedOrderInfo = orderService.getCachedOrderIfItWasPlacedOnSpecificDate(existingOrderId.get(), date);
+            if (cachedOrderInfo.isPresent()) {
+                return ResponseEntity.ok(cachedOrderInfo.get());
+            }
+            existingOrder = orderService.getOrderByEmailAndDate(email, orderDate);
+        }
 
         if (!existingOrder.isPresent()) {
             LOGGER.info("Order not found");
+            apiMetrics.countOutcome("getOrderIfItWasPlacedOnSpecificDate", "order_not_found");
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                                  .build();
         }
@@ -111,10 +351,117 @@ public class OrderController {
                                                                     .map(OrderDetail::getProduct)
                                                                     .collect(Collectors.toSet()), date)) {
             LOGGER.info("At least one product does not have price in parameter date");
+            apiMetrics.countOutcome("getOrderIfItWasPlacedOnSpecificDate", "price_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+        return ResponseEntity.ok(orderService.getOrderIfItWasPlacedOnSpecificDate(existingOrder.get(), date));
+    }
+
+    @GetMapping("/orders/{email}/{orderDate}/timeline")
+    @ApiOperation(value = "Check how total sum of order with specific email and order date changes if it would be placed in dates between from and to", notes = "Each change holds the order sum of the order placed after its date, until the date of the next change", response = OrderSumChange.class, responseContainer = "List")
+    ResponseEntity<?> getOrderSumTimeline(@Valid @PathVariable("email") String email
+            , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @Valid @PathVariable("orderDate") LocalDateTime orderDate
+            , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "from") LocalDateTime from
+            , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "to") LocalDateTime to) {
+
+        //to date cannot be before from date
+        if (from != null && to != null && to.isBefore(from)) {
+            LOGGER.info("DateFrom is greater then dateTo");
+            apiMetrics.countOutcome("getOrderSumTimeline", "date_range_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        Optional<Order> existingOrder = orderService.getOrderByEmailAndDate(email, orderDate);
+
+        if (!existingOrder.isPresent()) {
+            LOGGER.info("Order not found");
+            apiMetrics.countOutcome("getOrderSumTimeline", "order_not_found");
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                                  .build();
         }
-        return ResponseEntity.ok(OrderHelper.convertToOrderInfo(existingOrder.get(), orderService.countOrderTotalIfItWasPlacedOnSpecificDate(existingOrder.get(), date)));
+
+        return ResponseEntity.ok(orderService.getOrderSumTimeline(existingOrder.get(), from, to));
+    }
+
+    @PostMapping("/orders/repricings")
+    @ApiOperation(value = "Start pricing all orders placed between from and to dates as if they were placed on other date", notes = "Progress and result are returned by the URI in the Location header", response = RepricingJobInfo.class)
+    ResponseEntity<?> startRepricing(@RequestBody RepricingRequest repricingRequest) {
+
+        //to date cannot be before from date
+        if (repricingRequest.getFromDate() != null && repricingRequest.getToDate() != null && repricingRequest.getToDate().isBefore(repricingRequest.getFromDate())) {
+            LOGGER.info("DateFrom is greater then dateTo");
+            apiMetrics.countOutcome("startRepricing", "date_range_invalid");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .build();
+        }
+
+        RepricingJobInfo repricingJob = orderRepricingService.startRepricing(repricingRequest, LocalDateTime.now());
+
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                                                                  .path("/{id}")
+                                                                  .buildAndExpand(repricingJob.getId())
+                                                                  .toUri())
+                             .body(repricingJob);
+    }
+
+    @GetMapping("/orders/repricings/{id}")
+    @ApiOperation(value = "Check progress and sums of orders repricing", response = RepricingJobInfo.class)
+    ResponseEntity<?> getRepricing(@PathVariable("id") String id) {
+
+        Optional<RepricingJobInfo> repricingJob = orderRepricingService.getRepricingJob(id);
+
+        if (!repricingJob.isPresent()) {
+            LOGGER.info("Repricing not found");
+            apiMetrics.countOutcome("getRepricing", "repricing_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+
+        return ResponseEntity.ok(repricingJob.get());
+    }
+
+    @GetMapping(value = "/orders/repricings/{id}/orders", produces = "application/x-ndjson")
+    @ApiOperation(value = "Stream repriced orders of a done repricing, one JSON order per line", response = OrderRepricing.class, responseContainer = "List")
+    ResponseEntity<StreamingResponseBody> getRepricedOrders(@PathVariable("id") String id) throws IOException {
+
+        Optional<RepricingJobInfo> repricingJob = orderRepricingService.getRepricingJob(id);
+
+        if (!repricingJob.isPresent()) {
+            LOGGER.info("Repricing not found");
+            apiMetrics.countOutcome("getRepricedOrders", "repricing_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+
+        if (repricingJob.get().getStatus() != RepricingJobInfo.Status.DONE) {
+            LOGGER.info("Repricing is not done");
+            apiMetrics.countOutcome("getRepricedOrders", "repricing_not_done");
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                                 .build();
+        }
+
+        //opened before the response is streamed, so results of a job expiring meanwhile are not deleted under it
+        Optional<InputStream> repricedOrders = orderRepricingService.openRepricedOrders(id);
+
+        if (!repricedOrders.isPresent()) {
+            LOGGER.info("Repricing expired");
+            apiMetrics.countOutcome("getRepricedOrders", "repricing_not_found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                 .build();
+        }
+
+        StreamingResponseBody responseBody = outputStream -> {
+            try (InputStream results = repricedOrders.get()) {
+                StreamUtils.copy(results, outputStream);
+            }
+        };
+
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                             .body(responseBody);
     }
 
 }
@@ -0,0 +1,117 @@
+package com.example.productorder.order.controller;
+
+import com.example.productorder.order.domain.NewOrderInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of order creation keyed by the Idempotency-Key header sent by the client.
+ * <p>
+ * The first request with a key creates the order, retries with the same key wait for it and get its response without
+ * creating the order again. The key is released when creating the order throws, so the client can retry it.
+ * Keys are scoped to the customer email, two customers using the same key do not see each other's orders.
+ */
+@Component
+public class OrderIdempotencyCache implements MeterBinder {
+
+    private final Cache<Key, CompletableFuture<Entry>> cache;
+    private final long waitTimeoutMillis;
+
+    public OrderIdempotencyCache(@Value("${order.idempotency-cache.maximum-size:100000}") long maximumSize,
+                                 @Value("${order.idempotency-cache.expire-after-write-seconds:86400}") long expireAfterWriteSeconds,
+                                 @Value("${order.idempotency-cache.wait-timeout-millis:30000}") long waitTimeoutMillis) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                             .recordStats()
+                             .build();
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    /**
+     * @return response of the first request with the key or empty when the key was already used for other order
+     * @throws TimeoutException when the first request with the key is still creating the order after the wait timeout
+     */
+    public Optional<Response> execute(String idempotencyKey, NewOrderInfo newOrderInfo, Supplier<ResponseEntity<?>> createOrder) throws TimeoutException {
+        Key key = new Key(newOrderInfo.getEmail(), idempotencyKey);
+        while (true) {
+            CompletableFuture<Entry> created = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = cache.asMap().putIfAbsent(key, created);
+
+            if (existing == null) {
+                try {
+                    ResponseEntity<?> response = createOrder.get();
+                    created.complete(new Entry(newOrderInfo, response));
+                    return Optional.of(new Response(response, false));
+                } catch (RuntimeException e) {
+                    cache.asMap().remove(key, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            Entry entry;
+            try {
+                //a stuck first request must not hold a server thread of every retry
+                entry = existing.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                //first request failed and released the key
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for order with the same idempotency key", e);
+            }
+            return entry.getNewOrderInfo().equals(newOrderInfo) ? Optional.of(new Response(entry.getResponse(), true)) : Optional.empty();
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "orderIdempotency");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Response {
+
+        private final ResponseEntity<?> responseEntity;
+        //true when the response was stored by an earlier request with the same key
+        private final boolean replayed;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+
+        private final String email;
+        private final String idempotencyKey;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final NewOrderInfo newOrderInfo;
+        private final ResponseEntity<?> response;
+    }
+}
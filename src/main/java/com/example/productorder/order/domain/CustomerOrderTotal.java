@@ -0,0 +1,32 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.math.BigDecimal;
+
+
+/**
+ * Lifetime number and sum of orders of one customer, added to when an order is saved instead of summed on read.
+ */
+@Builder
+@ToString
+@Getter
+@Entity(name = "CUSTOMER_ORDER_TOTALS")
+@NoArgsConstructor(force = true) //sets values to its defaults
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CustomerOrderTotal {
+
+    @Id
+    @NonNull
+    private final String email;
+
+    @NonNull
+    private final Long orderCount;
+
+    @NonNull
+    private final BigDecimal total;
+}
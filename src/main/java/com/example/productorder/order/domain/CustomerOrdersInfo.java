@@ -0,0 +1,35 @@
+package com.example.productorder.order.domain;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+
+/**
+ * Lifetime totals of a customer with one page of the customer orders sorted by order date.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class CustomerOrdersInfo {
+
+    @NonNull
+    private final String email;
+
+    private final long orderCount;
+
+    @NonNull
+    private final BigDecimal total;
+
+    @NonNull
+    private final List<OrderInfo> orders;
+
+    //null on the last page, returned in the continuation token header
+    @JsonIgnore
+    private final OrderCursor nextCursor;
+}
@@ -0,0 +1,35 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+/**
+ * Order accepted by asynchronous ingestion as it is written to the order journal.
+ */
+@Builder
+@ToString
+@Getter
+@NoArgsConstructor(force = true) //sets values to its defaults
+@AllArgsConstructor
+@EqualsAndHashCode
+public class JournaledOrder {
+
+    @NonNull
+    private final String ingestionId;
+
+    @NonNull
+    private final String email;
+
+    @NonNull
+    private final LocalDateTime orderDate;
+
+    private final BigDecimal total;
+
+    @NonNull
+    private final List<JournaledOrderDetail> orderDetails;
+}
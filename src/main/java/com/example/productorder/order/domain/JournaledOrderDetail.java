@@ -0,0 +1,31 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+@Builder
+@ToString
+@Getter
+@NoArgsConstructor(force = true) //sets values to its defaults
+@AllArgsConstructor
+@EqualsAndHashCode
+public class JournaledOrderDetail {
+
+    @NonNull
+    private final String productName;
+
+    //ordered price is looked up among prices of the product by its value and start when the order is replayed,
+    //ids of prices are not kept as they may differ once the database is recreated
+    @NonNull
+    private final BigDecimal price;
+
+    @NonNull
+    private final LocalDateTime priceFromDate;
+
+    @NonNull
+    private final Long quantity;
+}
@@ -1,10 +1,15 @@
 package com.example.productorder.order.domain;
 
 
+import com.example.productorder.config.PooledSequenceGenerator;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.Email;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Set;
 
@@ -13,13 +18,21 @@ import java.util.Set;
 @ToString
 @Getter
 @Entity(name = "ORDERS")
+//customer can place only one order at a time, unique index rejects duplicates on insert
+@Table(indexes = {@Index(name = Order.EMAIL_ORDER_DATE_INDEX, columnList = "email, orderDate", unique = true),
+                  @Index(name = "IDX_ORDERS_ORDER_DATE_ID", columnList = "orderDate, id")})
 @NoArgsConstructor(force = true) //sets values to its defaults
 @AllArgsConstructor
 @EqualsAndHashCode
 public class Order {
 
+    public static final String EMAIL_ORDER_DATE_INDEX = "IDX_ORDERS_EMAIL_ORDER_DATE";
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ORDERS_SEQ")
+    @GenericGenerator(name = "ORDERS_SEQ", strategy = PooledSequenceGenerator.STRATEGY,
+                      parameters = {@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "ORDERS_SEQ"),
+                                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
     private Long id;
 
     @NonNull
@@ -29,7 +42,11 @@ public class Order {
     @NonNull
     private final LocalDateTime orderDate;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.PERSIST, orphanRemoval = true )
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST, orphanRemoval = true )
     Set<OrderDetail> orderDetail;
 
+    //counted once when the order is placed, prices of placed orders never change
+    @Setter
+    private BigDecimal total;
+
 }
\ No newline at end of file
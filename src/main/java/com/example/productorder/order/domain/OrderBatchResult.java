@@ -0,0 +1,28 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+
+@Builder
+@ToString
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderBatchResult {
+
+    public enum Status {
+        CREATED, CONFLICT, INVALID
+    }
+
+    //position of the order in the submitted batch
+    private int index;
+
+    @NonNull
+    private Status status;
+
+    private OrderInfo order;
+
+    private String message;
+}
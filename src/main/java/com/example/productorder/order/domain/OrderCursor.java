@@ -0,0 +1,24 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Position of the last order on a page, next page starts right after it in (orderDate, id) order.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderCursor {
+
+    @NonNull
+    private final LocalDateTime orderDate;
+
+    @NonNull
+    private final Long id;
+}
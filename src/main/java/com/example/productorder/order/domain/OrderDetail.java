@@ -1,9 +1,13 @@
 package com.example.productorder.order.domain;
 
 
+import com.example.productorder.config.PooledSequenceGenerator;
 import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.domain.Product;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 
@@ -18,15 +22,18 @@ import javax.persistence.*;
 public class OrderDetail {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "ORDER_DETAIL_SEQ")
+    @GenericGenerator(name = "ORDER_DETAIL_SEQ", strategy = PooledSequenceGenerator.STRATEGY,
+                      parameters = {@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "ORDER_DETAIL_SEQ"),
+                                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "500")})
     private Long id;
 
     @NonNull
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Product product;
 
     @NonNull
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Price price;
 
     @NonNull
@@ -0,0 +1,37 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+/**
+ * Read-only projection of one order detail joined with its product name and price.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderDetailView {
+
+    @NonNull
+    private final Long orderId;
+
+    @NonNull
+    private final String productName;
+
+    @NonNull
+    private final Long priceId;
+
+    @NonNull
+    private final BigDecimal price;
+
+    @NonNull
+    private final LocalDateTime fromDate;
+
+    @NonNull
+    private final Long quantity;
+}
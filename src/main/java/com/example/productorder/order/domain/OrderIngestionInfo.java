@@ -0,0 +1,34 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderIngestionInfo {
+
+    public enum Status {
+        QUEUED, CREATED, CONFLICT, FAILED
+    }
+
+    @NonNull
+    private final String id;
+
+    @NonNull
+    private final Status status;
+
+    @NonNull
+    private final String email;
+
+    @NonNull
+    private final LocalDateTime orderDate;
+
+    //filled once the order is saved
+    private final OrderInfo order;
+}
@@ -0,0 +1,21 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.util.List;
+
+
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderPage {
+
+    @NonNull
+    private final List<OrderInfo> orders;
+
+    //null on the last page
+    private final OrderCursor nextCursor;
+}
@@ -0,0 +1,35 @@
+package com.example.productorder.order.domain;
+
+
+import com.example.productorder.product.domain.Product;
+import lombok.*;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderPricingPlan {
+
+    @NonNull
+    private final String email;
+
+    //one entry per product, quantities of repeated products are already summed up
+    @NonNull
+    private final Collection<NewOrderDetailInfo> orderDetails;
+
+    @NonNull
+    private final Map<String, Product> products;
+
+    public boolean allProductsExist() {
+        return orderDetails.stream().allMatch(orderDetail -> products.containsKey(orderDetail.getProductName()));
+    }
+
+    public Product getProduct(String productName) {
+        return products.get(productName);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderRepricing {
+
+    @NonNull
+    private final String email;
+
+    @NonNull
+    private final LocalDateTime orderDate;
+
+    private final BigDecimal orderSum;
+
+    //null when at least one of ordered products has no price on repricing date
+    private final BigDecimal repricedOrderSum;
+}
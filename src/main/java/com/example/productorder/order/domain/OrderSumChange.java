@@ -0,0 +1,25 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+/**
+ * Order sum of the order if it was placed after the date, until the date of the next change.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderSumChange {
+
+    @NonNull
+    private final LocalDateTime date;
+
+    @NonNull
+    private final BigDecimal orderSum;
+}
@@ -0,0 +1,30 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+/**
+ * Read-only projection of the ORDERS columns needed to build {@link OrderInfo}.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class OrderView {
+
+    @NonNull
+    private final Long id;
+
+    @NonNull
+    private final String email;
+
+    @NonNull
+    private final LocalDateTime orderDate;
+
+    private final BigDecimal total;
+}
@@ -0,0 +1,19 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.util.Set;
+
+
+/**
+ * Published when new orders were saved, listeners interested in committed orders run after the commit.
+ */
+@ToString
+@Getter
+@AllArgsConstructor
+public class OrdersPlacedEvent {
+
+    @NonNull
+    private final Set<String> emails;
+}
@@ -0,0 +1,46 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class RepricingJobInfo {
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    @NonNull
+    private final String id;
+
+    @NonNull
+    private final Status status;
+
+    private final LocalDateTime fromDate;
+
+    private final LocalDateTime toDate;
+
+    @NonNull
+    private final LocalDateTime date;
+
+    private final long repricedOrders;
+
+    //orders with a product without price on repricing date, they are not part of the sums
+    private final long unpricedOrders;
+
+    @NonNull
+    private final BigDecimal orderSum;
+
+    @NonNull
+    private final BigDecimal repricedOrderSum;
+
+    private final double ordersPerSecond;
+}
@@ -0,0 +1,24 @@
+package com.example.productorder.order.domain;
+
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+@Builder
+@ToString
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class RepricingRequest {
+
+    //orders placed between the dates are repriced, both are optional
+    private LocalDateTime fromDate;
+
+    private LocalDateTime toDate;
+
+    //orders are priced as if they were placed on this date, now when missing
+    private LocalDateTime date;
+}
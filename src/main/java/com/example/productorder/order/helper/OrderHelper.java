@@ -1,12 +1,18 @@
 package com.example.productorder.order.helper;
 
-import com.example.productorder.order.domain.Order;
-import com.example.productorder.order.domain.OrderDetail;
-import com.example.productorder.order.domain.OrderDetailInfo;
-import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.order.domain.*;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.domain.ProductInfo;
 import com.example.productorder.product.helper.ProductHelper;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class OrderHelper {
@@ -19,6 +25,10 @@ public class OrderHelper {
                     .build();
     }
 
+    public static OrderInfo convertToOrderInfo(Order order) {
+        return convertToOrderInfo(order, order.getTotal());
+    }
+
     public static OrderInfo convertToOrderInfo(Order order, BigDecimal orderSum) {
         return OrderInfo.builder()
                         .email(order.getEmail())
@@ -28,6 +38,40 @@ public class OrderHelper {
                         .build();
     }
 
+    /**
+     * @param products ordered products by name, their prices are returned with the order
+     */
+    public static OrderInfo convertToOrderInfo(OrderView order, Collection<OrderDetailView> orderDetails, Map<String, Product> products) {
+        return OrderInfo.builder()
+                        .email(order.getEmail())
+                        .orderDate(order.getOrderDate())
+                        .orderDetail(orderDetails.stream().map(orderDetail -> convertToOrderDetailInfo(orderDetail, products.get(orderDetail.getProductName()))).collect(Collectors.toSet()))
+                        .orderSum(order.getTotal())
+                        .build();
+    }
+
+    /**
+     * Copy of the order whose products have prices of the given products, e.g. for a cached order whose products got
+     * new prices since. Products not given are kept.
+     */
+    public static OrderInfo withProducts(OrderInfo orderInfo, Map<String, Product> products) {
+        return OrderInfo.builder()
+                        .email(orderInfo.getEmail())
+                        .orderDate(orderInfo.getOrderDate())
+                        .orderDetail(orderInfo.getOrderDetail()
+                                              .stream()
+                                              .map(orderDetail -> OrderDetailInfo.builder()
+                                                                                 .product(products.containsKey(orderDetail.getProduct().getName())
+                                                                                          ? ProductHelper.convertToProductInfo(products.get(orderDetail.getProduct().getName()))
+                                                                                          : orderDetail.getProduct())
+                                                                                 .quantity(orderDetail.getQuantity())
+                                                                                 .price(orderDetail.getPrice())
+                                                                                 .build())
+                                              .collect(Collectors.toSet()))
+                        .orderSum(orderInfo.getOrderSum())
+                        .build();
+    }
+
     private static OrderDetail convertToOrderDetail(OrderDetailInfo orderDetailInfo) {
         return OrderDetail.builder()
                           .product(ProductHelper.convertToProduct(orderDetailInfo.getProduct()))
@@ -37,10 +81,51 @@ public class OrderHelper {
     }
 
     private static OrderDetailInfo convertToOrderDetailInfo(OrderDetail orderDetail) {
+        //plain price copy unwraps lazy proxies
         return OrderDetailInfo.builder()
                               .product(ProductHelper.convertToProductInfo(orderDetail.getProduct()))
                               .quantity(orderDetail.getQuantity())
-                              .price(orderDetail.getPrice())
+                              .price(Price.builder()
+                                          .id(orderDetail.getPrice().getId())
+                                          .price(orderDetail.getPrice().getPrice())
+                                          .fromDate(orderDetail.getPrice().getFromDate())
+                                          .build())
+                              .build();
+    }
+
+    private static OrderDetailInfo convertToOrderDetailInfo(OrderDetailView orderDetail, Product product) {
+        return OrderDetailInfo.builder()
+                              .product(convertToProductInfo(orderDetail.getProductName(), product))
+                              .quantity(orderDetail.getQuantity())
+                              .price(Price.builder()
+                                          .id(orderDetail.getPriceId())
+                                          .price(orderDetail.getPrice())
+                                          .fromDate(orderDetail.getFromDate())
+                                          .build())
+                              .build();
+    }
+
+    private static ProductInfo convertToProductInfo(String productName, Product product) {
+        return product != null ? ProductHelper.convertToProductInfo(product) : ProductInfo.builder().name(productName).build();
+    }
+
+    public static String convertToContinuationToken(OrderCursor orderCursor) {
+        String cursor = orderCursor.getOrderDate() + "|" + orderCursor.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor convertToOrderCursor(String continuationToken) {
+        try {
+            String[] cursor = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8).split("\\|");
+            if (cursor.length != 2) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            return OrderCursor.builder()
+                              .orderDate(LocalDateTime.parse(cursor[0]))
+                              .id(Long.valueOf(cursor[1]))
                               .build();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
     }
 }
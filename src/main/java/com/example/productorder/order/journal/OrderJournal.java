@@ -0,0 +1,426 @@
+package com.example.productorder.order.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of accepted orders kept in memory-mapped segment files.
+ * <p>
+ * Every entry is its payload length, CRC32 of the payload and the payload. A zero length or a checksum mismatch marks the
+ * end of written entries, so a torn tail is cut off when the journal is opened. Appends made at the same time share one
+ * {@link MappedByteBuffer#force()} (group commit). Position of the first entry not yet applied to the database is kept in
+ * the checkpoint file, segments before it are not needed anymore and are deleted. Entries which cannot be applied are
+ * moved to the dead letter file, same format as a segment, so they do not hold the checkpoint back.
+ */
+@Component
+@ConditionalOnProperty("order.journal.enabled")
+public class OrderJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderJournal.class);
+
+    static final String SEGMENT_PREFIX = "orders-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final String CHECKPOINT_FILE = "orders.checkpoint";
+    static final String DEAD_LETTER_FILE = "orders.dead-letter";
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    //start positions of appended entries which are not applied to the database yet
+    private final NavigableSet<Long> unapplied = new ConcurrentSkipListSet<>();
+    //end of entries written before this journal was opened, only they are replayed
+    private final long openedPosition;
+
+    //guarded by appendLock
+    private int segmentIndex;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long writtenPosition;
+    private long checkpoint;
+    //guarded by syncLock
+    private long durablePosition;
+
+    public OrderJournal(@Value("${order.journal.directory:journal}") Path directory,
+                        @Value("${order.journal.segment-size:67108864}") int segmentSize,
+                        @Value("${order.journal.fsync:true}") boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+
+        Files.createDirectories(directory);
+        checkpoint = readCheckpoint(directory);
+        List<Integer> segmentIndexes = segmentIndexes(directory);
+        openSegment(segmentIndexes.isEmpty() ? segmentIndex(checkpoint) : segmentIndexes.get(segmentIndexes.size() - 1));
+
+        //entries after the last valid one were torn by a crash, they are overwritten by next appends
+        int end = scan(segment.duplicate(), 0, null);
+        if (!isZero(segment, end)) {
+            LOGGER.warn("Order journal {} has torn entry at segment {} offset {}, it is dropped", directory, segmentIndex, end);
+            zero(segment, end);
+        }
+        segment.position(end);
+        writtenPosition = position(segmentIndex, end);
+        durablePosition = writtenPosition;
+        openedPosition = writtenPosition;
+        if (end > 0) {
+            LOGGER.info("Order journal {} opened, entries end at segment {} offset {}", directory, segmentIndex, end);
+        }
+    }
+
+    /**
+     * Appends the entry, when fsync is on it is on disk once this method returns.
+     *
+     * @return position of the entry, used to mark it applied
+     */
+    public long append(byte[] payload) {
+        int entrySize = HEADER_SIZE + payload.length;
+        if (entrySize > segmentSize) {
+            throw new IllegalArgumentException("Journal entry of " + entrySize + " bytes does not fit in a segment");
+        }
+
+        long position;
+        long end;
+        synchronized (appendLock) {
+            if (segment.remaining() < entrySize) {
+                roll();
+            }
+            position = position(segmentIndex, segment.position());
+            segment.putInt(payload.length)
+                   .putInt(crc(payload))
+                   .put(payload);
+            unapplied.add(position);
+            end = writtenPosition = position(segmentIndex, segment.position());
+        }
+
+        if (fsync) {
+            sync(end);
+        }
+        return position;
+    }
+
+    /**
+     * Returns entries written before the journal was opened and not applied to the database, e.g. accepted before a crash,
+     * in append order. Entries appended since are left out, they are applied by whoever appended them.
+     */
+    public List<Entry> readUnapplied() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (appendLock) {
+            for (int index : segmentIndexes(directory)) {
+                if (index < segmentIndex(checkpoint) || index > segmentIndex(openedPosition)) {
+                    continue;
+                }
+                ByteBuffer buffer = index == segmentIndex ? segment.duplicate() : map(directory.resolve(segmentFileName(index)), FileChannel.MapMode.READ_ONLY);
+                int from = index == segmentIndex(checkpoint) ? offset(checkpoint) : 0;
+                scan(buffer, from, (offset, payload) -> {
+                    if (position(index, offset) < openedPosition) {
+                        entries.add(new Entry(position(index, offset), payload));
+                    }
+                });
+            }
+            entries.forEach(entry -> unapplied.add(entry.getPosition()));
+        }
+        return entries;
+    }
+
+    /**
+     * Marks entries as saved in the database, moves the checkpoint and deletes segments before it.
+     */
+    public synchronized void applied(Collection<Long> positions) throws IOException {
+        unapplied.removeAll(positions);
+        long newCheckpoint;
+        synchronized (appendLock) {
+            Long firstUnapplied = unapplied.isEmpty() ? null : unapplied.first();
+            newCheckpoint = firstUnapplied == null ? writtenPosition : firstUnapplied;
+            if (newCheckpoint <= checkpoint) {
+                return;
+            }
+            checkpoint = newCheckpoint;
+        }
+
+        writeCheckpoint(directory, newCheckpoint, fsync);
+        compact(directory);
+    }
+
+    /**
+     * Appends entries to the dead letter file and marks them applied, so the checkpoint moves past them.
+     */
+    public synchronized void deadLetter(Collection<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (Entry entry : entries) {
+                channel.write((ByteBuffer) ByteBuffer.allocate(HEADER_SIZE + entry.getPayload().length)
+                                                     .putInt(entry.getPayload().length)
+                                                     .putInt(crc(entry.getPayload()))
+                                                     .put(entry.getPayload())
+                                                     .flip());
+            }
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        applied(entries.stream()
+                       .map(Entry::getPosition)
+                       .collect(Collectors.toList()));
+    }
+
+    @Override
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (segmentChannel.isOpen()) {
+                if (fsync) {
+                    segment.force();
+                }
+                segmentChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes segments whose entries are all applied, the segment with the checkpoint and later ones are kept.
+     *
+     * @return names of deleted segments
+     */
+    public static List<String> compact(Path directory) throws IOException {
+        int checkpointSegment = segmentIndex(readCheckpoint(directory));
+        List<String> deleted = new ArrayList<>();
+        for (int index : segmentIndexes(directory)) {
+            if (index < checkpointSegment) {
+                Files.deleteIfExists(directory.resolve(segmentFileName(index)));
+                deleted.add(segmentFileName(index));
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads every segment without changing it, safe to use while the application is running.
+     */
+    public static List<SegmentInfo> inspect(Path directory) throws IOException {
+        long checkpoint = readCheckpoint(directory);
+        List<SegmentInfo> segments = new ArrayList<>();
+        for (int index : segmentIndexes(directory)) {
+            Path segmentFile = directory.resolve(segmentFileName(index));
+            ByteBuffer buffer = map(segmentFile, FileChannel.MapMode.READ_ONLY);
+            int[] entries = new int[2];
+            int end = scan(buffer, 0, (offset, payload) -> {
+                entries[0]++;
+                if (position(index, offset) >= checkpoint) {
+                    entries[1]++;
+                }
+            });
+            segments.add(new SegmentInfo(segmentFile.getFileName().toString(), buffer.capacity(), end, entries[0], entries[1], !isZero(buffer, end)));
+        }
+        return segments;
+    }
+
+    /**
+     * Reads the dead letter file, positions of returned entries are offsets in it.
+     */
+    public static List<Entry> readDeadLetters(Path directory) throws IOException {
+        Path deadLetterFile = directory.resolve(DEAD_LETTER_FILE);
+        if (!Files.exists(deadLetterFile)) {
+            return Collections.emptyList();
+        }
+        List<Entry> entries = new ArrayList<>();
+        scan(map(deadLetterFile, FileChannel.MapMode.READ_ONLY), 0, (offset, payload) -> entries.add(new Entry(offset, payload)));
+        return entries;
+    }
+
+    public static long readCheckpoint(Path directory) throws IOException {
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong();
+    }
+
+    private static void writeCheckpoint(Path directory, long checkpoint, boolean fsync) throws IOException {
+        //written aside and moved, so the checkpoint file is never half written
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        Path newCheckpointFile = directory.resolve(CHECKPOINT_FILE + ".new");
+        try (FileChannel channel = FileChannel.open(newCheckpointFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write((ByteBuffer) ByteBuffer.allocate(Long.BYTES).putLong(checkpoint).flip());
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        Files.move(newCheckpointFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void sync(long end) {
+        synchronized (syncLock) {
+            //one force covers every entry appended before it started
+            if (durablePosition >= end) {
+                return;
+            }
+            MappedByteBuffer currentSegment;
+            long target;
+            synchronized (appendLock) {
+                currentSegment = segment;
+                target = writtenPosition;
+            }
+            currentSegment.force();
+            durablePosition = target;
+        }
+    }
+
+    //called with appendLock held
+    private void roll() {
+        try {
+            if (fsync) {
+                segment.force();
+            }
+            segmentChannel.close();
+            openSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(int index) throws IOException {
+        segmentIndex = index;
+        segmentChannel = FileChannel.open(directory.resolve(segmentFileName(index)), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, segmentChannel.size()));
+    }
+
+    /**
+     * Reads valid entries starting at offset.
+     *
+     * @return offset right after the last valid entry
+     */
+    private static int scan(ByteBuffer buffer, int from, EntryConsumer consumer) {
+        int offset = from;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - HEADER_SIZE) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer entry = buffer.duplicate();
+            entry.position(offset + HEADER_SIZE);
+            entry.get(payload);
+            if (crc(payload) != buffer.getInt(offset + Integer.BYTES)) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(offset, payload);
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void zero(ByteBuffer buffer, int from) {
+        byte[] zeros = new byte[8192];
+        ByteBuffer tail = buffer.duplicate();
+        tail.position(from);
+        while (tail.hasRemaining()) {
+            tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+        }
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.capacity(); i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(mode, 0, channel.size());
+        }
+    }
+
+    private static List<Integer> segmentIndexes(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    static String segmentFileName(int index) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    //position is segment index in the high and offset in the low 32 bits, so positions of later entries are greater
+    static long position(int segmentIndex, int offset) {
+        return ((long) segmentIndex << Integer.SIZE) | offset;
+    }
+
+    static int segmentIndex(long position) {
+        return (int) (position >>> Integer.SIZE);
+    }
+
+    static int offset(long position) {
+        return (int) position;
+    }
+
+    private interface EntryConsumer {
+        void accept(int offset, byte[] payload);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final long position;
+        private final byte[] payload;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class SegmentInfo {
+
+        private final String name;
+        private final int size;
+        private final int usedBytes;
+        private final int entries;
+        //entries at or after the checkpoint, not applied to the database yet
+        private final int unappliedEntries;
+        //bytes after the last valid entry are not zero, e.g. entry torn by a crash
+        private final boolean tornTail;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.productorder.order.journal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Command line tool for the order journal, run with {@code ./gradlew journalTool -Pargs="inspect journal"}.
+ * <ul>
+ * <li>{@code inspect <directory>} - prints checkpoint and entries of every segment</li>
+ * <li>{@code compact <directory>} - deletes segments whose entries are all applied to the database</li>
+ * <li>{@code dead-letters <directory>} - prints entries which could not be applied, one payload per line</li>
+ * </ul>
+ */
+public class OrderJournalTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !("inspect".equals(args[0]) || "compact".equals(args[0]) || "dead-letters".equals(args[0]))) {
+            System.err.println("Usage: OrderJournalTool inspect|compact|dead-letters <directory>");
+            System.exit(1);
+        }
+
+        Path directory = Paths.get(args[1]);
+        if ("compact".equals(args[0])) {
+            List<String> deleted = OrderJournal.compact(directory);
+            deleted.forEach(name -> System.out.println("deleted " + name));
+            System.out.println(deleted.size() + " segments deleted");
+            return;
+        }
+
+        if ("dead-letters".equals(args[0])) {
+            List<OrderJournal.Entry> deadLetters = OrderJournal.readDeadLetters(directory);
+            deadLetters.forEach(entry -> System.out.println(new String(entry.getPayload(), StandardCharsets.UTF_8)));
+            System.out.println(deadLetters.size() + " dead letters");
+            return;
+        }
+
+        long checkpoint = OrderJournal.readCheckpoint(directory);
+        System.out.println("checkpoint: segment " + OrderJournal.segmentIndex(checkpoint) + " offset " + OrderJournal.offset(checkpoint));
+        for (OrderJournal.SegmentInfo segment : OrderJournal.inspect(directory)) {
+            System.out.println(String.format("%s: %d entries (%d unapplied), %d of %d bytes used%s", segment.getName(), segment.getEntries(),
+                                             segment.getUnappliedEntries(), segment.getUsedBytes(), segment.getSize(), segment.isTornTail() ? ", torn tail" : ""));
+        }
+    }
+}
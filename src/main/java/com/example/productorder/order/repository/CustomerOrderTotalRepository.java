@@ -0,0 +1,16 @@
+package com.example.productorder.order.repository;
+
+import com.example.productorder.order.domain.CustomerOrderTotal;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+public interface CustomerOrderTotalRepository extends CrudRepository<CustomerOrderTotal, String>, CustomerOrderTotalRepositoryCustom {
+
+    //orders of each customer are summed once, customers who already have totals are skipped
+    @Modifying
+    @Query(value = "insert into CUSTOMER_ORDER_TOTALS (email, order_count, total) "
+            + "select o.email, count(*), coalesce(sum(o.total), 0) from ORDERS o "
+            + "where not exists (select 1 from CUSTOMER_ORDER_TOTALS t where t.email = o.email) group by o.email", nativeQuery = true)
+    int insertMissingTotals();
+}
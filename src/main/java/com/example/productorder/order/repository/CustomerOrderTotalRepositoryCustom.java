@@ -0,0 +1,12 @@
+package com.example.productorder.order.repository;
+
+import java.math.BigDecimal;
+
+public interface CustomerOrderTotalRepositoryCustom {
+
+    /**
+     * Adds orders to totals of the customer, totals of a new customer are inserted. Runs in the transaction saving
+     * the orders, concurrent orders of one customer do not overwrite each other.
+     */
+    void add(String email, long orderCount, BigDecimal total);
+}
@@ -0,0 +1,54 @@
+package com.example.productorder.order.repository;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public class CustomerOrderTotalRepositoryCustomImpl implements CustomerOrderTotalRepositoryCustom {
+
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void add(String email, long orderCount, BigDecimal total) {
+        //plain JDBC on the connection of the transaction, a failed insert through JPA would mark the whole transaction
+        //for rollback, while the database lets the transaction go on after it
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            if (update(connection, email, orderCount, total) == 0 && !insert(connection, email, orderCount, total)) {
+                //inserted by a first order of the customer saved at the same moment, the insert waited for its commit
+                update(connection, email, orderCount, total);
+            }
+        });
+    }
+
+    private static int update(Connection connection, String email, long orderCount, BigDecimal total) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("update CUSTOMER_ORDER_TOTALS set order_count = order_count + ?, total = total + ? where email = ?")) {
+            statement.setLong(1, orderCount);
+            statement.setBigDecimal(2, total);
+            statement.setString(3, email);
+            return statement.executeUpdate();
+        }
+    }
+
+    private static boolean insert(Connection connection, String email, long orderCount, BigDecimal total) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("insert into CUSTOMER_ORDER_TOTALS (email, order_count, total) values (?, ?, ?)")) {
+            statement.setString(1, email);
+            statement.setLong(2, orderCount);
+            statement.setBigDecimal(3, total);
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION_SQL_STATE.equals(e.getSQLState())) {
+                return false;
+            }
+            throw e;
+        }
+    }
+}
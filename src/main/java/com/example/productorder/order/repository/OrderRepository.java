@@ -1,18 +1,35 @@
 package com.example.productorder.order.repository;
 
 import com.example.productorder.order.domain.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface OrderRepository extends CrudRepository<Order, Integer> {
+public interface OrderRepository extends CrudRepository<Order, Integer>, OrderRepositoryCustom {
 
     List<Order> findAll();
     List<Order>  findByOrderDateBetween(LocalDateTime from, LocalDateTime to);
     List<Order>  findByOrderDateGreaterThanEqual(LocalDateTime from);
     List<Order>  findByOrderDateLessThanEqual(LocalDateTime to);
 
+    //what-if pricing needs whole price history of ordered products
+    @EntityGraph(attributePaths = {"orderDetail.price", "orderDetail.product.prices"})
     Optional<Order> findByEmailAndOrderDate(String email, LocalDateTime date);
+
+    @Query("select o.id from ORDERS o where o.email = :email and o.orderDate = :orderDate")
+    Optional<Long> findIdByEmailAndOrderDate(@Param("email") String email, @Param("orderDate") LocalDateTime orderDate);
+
+    List<Order> findByEmailInAndOrderDate(Collection<String> emails, LocalDateTime date);
+
+    <S extends Order> List<S> saveAll(Iterable<S> orders);
+
+    <S extends Order> S saveAndFlush(S order);
+
+    List<Order> findFirst500ByTotalIsNull();
 }
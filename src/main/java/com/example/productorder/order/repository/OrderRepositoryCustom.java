@@ -0,0 +1,24 @@
+package com.example.productorder.order.repository;
+
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetailView;
+import com.example.productorder.order.domain.OrderView;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderRepositoryCustom {
+
+    /**
+     * Orders sorted by (orderDate, id), all parameters are optional, without limit all matching orders are returned.
+     */
+    List<OrderView> findOrderViews(LocalDateTime from, LocalDateTime to, OrderCursor after, Integer limit);
+
+    /**
+     * Orders of one customer sorted by orderDate, cursor and limit are optional, only orderDate of the cursor is used.
+     */
+    List<OrderView> findOrderViewsByEmail(String email, OrderCursor after, Integer limit);
+
+    List<OrderDetailView> findOrderDetailViews(Collection<Long> orderIds);
+}
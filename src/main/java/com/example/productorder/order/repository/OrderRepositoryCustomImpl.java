@@ -0,0 +1,92 @@
+package com.example.productorder.order.repository;
+
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetailView;
+import com.example.productorder.order.domain.OrderView;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    //keeps the IN list of the details query within limits of every database
+    private static final int ORDER_IDS_CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<OrderView> findOrderViews(LocalDateTime from, LocalDateTime to, OrderCursor after, Integer limit) {
+        List<String> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add("o.orderDate >= :from");
+        }
+        if (to != null) {
+            conditions.add("o.orderDate <= :to");
+        }
+        if (after != null) {
+            //leading range on orderDate lets the (orderDate, id) index seek straight to the cursor
+            conditions.add("o.orderDate >= :afterDate and (o.orderDate > :afterDate or o.id > :afterId)");
+        }
+
+        String jpql = "select new com.example.productorder.order.domain.OrderView(o.id, o.email, o.orderDate, o.total) from ORDERS o"
+                + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+                + " order by o.orderDate, o.id";
+
+        TypedQuery<OrderView> query = entityManager.createQuery(jpql, OrderView.class);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        if (after != null) {
+            query.setParameter("afterDate", after.getOrderDate());
+            query.setParameter("afterId", after.getId());
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    public List<OrderView> findOrderViewsByEmail(String email, OrderCursor after, Integer limit) {
+        //orderDate is unique per customer, so it alone orders the page and the (email, orderDate) index serves both
+        String jpql = "select new com.example.productorder.order.domain.OrderView(o.id, o.email, o.orderDate, o.total) from ORDERS o"
+                + " where o.email = :email"
+                + (after == null ? "" : " and o.orderDate > :afterDate")
+                + " order by o.email, o.orderDate";
+
+        TypedQuery<OrderView> query = entityManager.createQuery(jpql, OrderView.class)
+                                                   .setParameter("email", email);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        if (after != null) {
+            query.setParameter("afterDate", after.getOrderDate());
+        }
+
+        return query.getResultList();
+    }
+
+    @Override
+    public List<OrderDetailView> findOrderDetailViews(Collection<Long> orderIds) {
+        List<Long> ids = new ArrayList<>(orderIds);
+        List<OrderDetailView> orderDetails = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += ORDER_IDS_CHUNK_SIZE) {
+            orderDetails.addAll(entityManager.createQuery("select new com.example.productorder.order.domain.OrderDetailView(o.id, p.name, pr.id, pr.price, pr.fromDate, d.quantity)"
+                                                                  + " from ORDERS o join o.orderDetail d join d.product p join d.price pr"
+                                                                  + " where o.id in :orderIds", OrderDetailView.class)
+                                             .setParameter("orderIds", ids.subList(i, Math.min(i + ORDER_IDS_CHUNK_SIZE, ids.size())))
+                                             .getResultList());
+        }
+        return orderDetails;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.CustomerOrdersInfo;
+import com.example.productorder.order.domain.OrdersPlacedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * First page of orders with lifetime totals of recently requested customers, keyed by customer email.
+ * <p>
+ * A customer entry is dropped once a new order of the customer is committed, a page loaded while the order was
+ * saved is dropped too because invalidation waits for the running load of the same email.
+ */
+@Component
+public class CustomerOrdersCache implements MeterBinder {
+
+    private final Cache<String, CustomerOrdersInfo> cache;
+
+    public CustomerOrdersCache(@Value("${order.customer-cache.maximum-size:1000}") long maximumSize,
+                               @Value("${order.customer-cache.expire-after-write-seconds:60}") long expireAfterWriteSeconds) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                             .recordStats()
+                             .build();
+    }
+
+    public Optional<CustomerOrdersInfo> get(String email, Function<String, Optional<CustomerOrdersInfo>> loader) {
+        //unknown emails are not cached, looking them up does not push customers out of the cache
+        return Optional.ofNullable(cache.get(email, key -> loader.apply(key).orElse(null)));
+    }
+
+    //saves outside of a transaction publish it too, then it runs right away
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrdersPlaced(OrdersPlacedEvent event) {
+        cache.invalidateAll(event.getEmails());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "customerOrders");
+    }
+}
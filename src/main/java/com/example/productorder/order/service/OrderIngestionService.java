@@ -0,0 +1,403 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.JournaledOrder;
+import com.example.productorder.order.domain.JournaledOrderDetail;
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.OrderIngestionInfo;
+import com.example.productorder.order.helper.OrderHelper;
+import com.example.productorder.order.journal.OrderJournal;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind saving of validated and priced orders.
+ * <p>
+ * Orders wait in a bounded queue, a single writer thread saves them in batches, one transaction per batch. When a batch
+ * fails, e.g. because one of its orders is already placed, its orders are saved one by one so only the duplicate gets
+ * {@link OrderIngestionInfo.Status#CONFLICT}. Orders which fail otherwise, e.g. because the database is not available, are
+ * retried a few times before they get {@link OrderIngestionInfo.Status#FAILED}. On shutdown the queue stops accepting
+ * orders and is drained.
+ * <p>
+ * With the order journal enabled every order is appended to it before it is accepted, created and conflicting orders are
+ * marked applied. Orders accepted but not saved before a crash are saved on next start. Orders which failed every retry
+ * and journaled orders whose product or price does not exist anymore are moved to the dead letters of the journal, so
+ * they do not stop the checkpoint.
+ */
+@Service
+public class OrderIngestionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderIngestionService.class);
+
+    public static final String QUEUE_SIZE_GAUGE = "order.ingestion.queue.size";
+    public static final String FLUSH_TIMER = "order.ingestion.flush";
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final OrderService orderService;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final Optional<OrderJournal> orderJournal;
+    private final boolean async;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long shutdownTimeoutSeconds;
+    private final int retries;
+    private final long retryBackoffMillis;
+    private final BlockingQueue<QueuedOrder> queue = new LinkedBlockingQueue<>();
+    //taken before the order is journaled and returned once it is saved, bounds queued and in flight orders
+    private final Semaphore capacity;
+    private final Cache<String, OrderIngestionInfo> ingestions;
+    private final Timer flushTimer;
+    //guards accepting, so no order is taken after the writer was told to drain and stop
+    private final Object acceptLock = new Object();
+    private volatile boolean accepting = true;
+    private Thread writer;
+
+    @Autowired
+    public OrderIngestionService(OrderService orderService, ProductService productService, ObjectMapper objectMapper,
+                                 Optional<OrderJournal> orderJournal, MeterRegistry meterRegistry,
+                                 @Value("${order.ingestion.async:false}") boolean async,
+                                 @Value("${order.ingestion.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${order.ingestion.batch-size:100}") int batchSize,
+                                 @Value("${order.ingestion.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds,
+                                 @Value("${order.ingestion.retries:3}") int retries,
+                                 @Value("${order.ingestion.retry-backoff-millis:500}") long retryBackoffMillis,
+                                 @Value("${order.ingestion.status-maximum-size:100000}") long statusMaximumSize,
+                                 @Value("${order.ingestion.status-expire-after-write-seconds:3600}") long statusExpireAfterWriteSeconds) {
+        this.orderService = orderService;
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.orderJournal = orderJournal;
+        this.async = async;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.retries = retries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.capacity = new Semaphore(queueCapacity);
+        this.ingestions = Caffeine.newBuilder()
+                                  .maximumSize(statusMaximumSize)
+                                  .expireAfterWrite(statusExpireAfterWriteSeconds, TimeUnit.SECONDS)
+                                  .build();
+        Gauge.builder(QUEUE_SIZE_GAUGE, queue, BlockingQueue::size)
+             .register(meterRegistry);
+        this.flushTimer = Timer.builder(FLUSH_TIMER)
+                               .publishPercentiles(0.5, 0.95, 0.99)
+                               .register(meterRegistry);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    //products are loaded by application runners, journaled orders are replayed once they are done
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException, InterruptedException {
+        if (async) {
+            if (orderJournal.isPresent()) {
+                replay(orderJournal.get());
+            }
+            writer = new Thread(this::writeBehind, "order-ingestion");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * @return queued order status or empty when the queue is full or shutting down
+     */
+    public Optional<OrderIngestionInfo> enqueue(Order order) {
+        synchronized (acceptLock) {
+            if (!accepting || !capacity.tryAcquire()) {
+                return Optional.empty();
+            }
+        }
+
+        QueuedOrder queuedOrder;
+        try {
+            queuedOrder = journal(new QueuedOrder(UUID.randomUUID().toString(), order, null));
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+
+        OrderIngestionInfo ingestionInfo = ingestionInfo(queuedOrder, OrderIngestionInfo.Status.QUEUED, null);
+        ingestions.put(queuedOrder.id, ingestionInfo);
+        queue.add(queuedOrder);
+        return Optional.of(ingestionInfo);
+    }
+
+    public Optional<OrderIngestionInfo> getIngestion(String id) {
+        return Optional.ofNullable(ingestions.getIfPresent(id));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        synchronized (acceptLock) {
+            accepting = false;
+        }
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds));
+            if (writer.isAlive()) {
+                LOGGER.warn("Order ingestion did not drain in {}s, {} orders are not saved", shutdownTimeoutSeconds, queue.size());
+                writer.interrupt();
+            }
+        }
+    }
+
+    private void writeBehind() {
+        List<QueuedOrder> batch = new ArrayList<>(batchSize);
+        //orders which already took capacity are saved even when shutdown started meanwhile
+        while (accepting || capacity.availablePermits() < queueCapacity) {
+            try {
+                QueuedOrder first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                long start = System.nanoTime();
+                List<QueuedOrder> failedOrders = flushWithRetries(batch);
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                markApplied(batch, failedOrders);
+            } catch (InterruptedException e) {
+                //orders of the interrupted batch are not marked applied, the journal keeps them
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                capacity.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void replay(OrderJournal journal) throws IOException, InterruptedException {
+        List<QueuedOrder> journaledOrders = new ArrayList<>();
+        List<OrderJournal.Entry> unresolvedEntries = new ArrayList<>();
+        for (OrderJournal.Entry entry : journal.readUnapplied()) {
+            JournaledOrder journaledOrder = objectMapper.readValue(entry.getPayload(), JournaledOrder.class);
+            Optional<Order> order = convertToOrder(journaledOrder);
+            if (order.isPresent()) {
+                journaledOrders.add(new QueuedOrder(journaledOrder.getIngestionId(), order.get(), entry.getPosition()));
+            } else {
+                //products are loaded by now, so the order cannot be saved on any later attempt either
+                LOGGER.error("Journaled order {} cannot be replayed, its product or price does not exist: {}", journaledOrder.getIngestionId(), journaledOrder);
+                unresolvedEntries.add(entry);
+            }
+        }
+        if (!unresolvedEntries.isEmpty()) {
+            journal.deadLetter(unresolvedEntries);
+            LOGGER.error("{} journaled orders moved to dead letters", unresolvedEntries.size());
+        }
+
+        for (int from = 0; from < journaledOrders.size(); from += batchSize) {
+            List<QueuedOrder> batch = journaledOrders.subList(from, Math.min(from + batchSize, journaledOrders.size()));
+            markApplied(batch, flushWithRetries(batch));
+        }
+        if (!journaledOrders.isEmpty()) {
+            LOGGER.info("Replayed {} journaled orders", journaledOrders.size());
+        }
+    }
+
+    private QueuedOrder journal(QueuedOrder queuedOrder) {
+        if (!orderJournal.isPresent()) {
+            return queuedOrder;
+        }
+        long position = orderJournal.get().append(journaledPayload(queuedOrder));
+        return new QueuedOrder(queuedOrder.id, queuedOrder.order, position);
+    }
+
+    private byte[] journaledPayload(QueuedOrder queuedOrder) {
+        try {
+            return objectMapper.writeValueAsBytes(convertToJournaledOrder(queuedOrder));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //orders which failed every retry are moved to dead letters, so the checkpoint is not stuck before them
+    private void markApplied(List<QueuedOrder> batch, List<QueuedOrder> failedOrders) {
+        if (!orderJournal.isPresent() || batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (!failedOrders.isEmpty()) {
+                orderJournal.get().deadLetter(failedOrders.stream()
+                                                          .map(queuedOrder -> new OrderJournal.Entry(queuedOrder.journalPosition, journaledPayload(queuedOrder)))
+                                                          .collect(Collectors.toList()));
+                LOGGER.error("{} orders were not saved, they are moved to dead letters of the order journal", failedOrders.size());
+            }
+            orderJournal.get().applied(batch.stream()
+                                            .filter(queuedOrder -> !failedOrders.contains(queuedOrder))
+                                            .map(queuedOrder -> queuedOrder.journalPosition)
+                                            .collect(Collectors.toList()));
+        } catch (IOException e) {
+            //orders stay unapplied in the journal, replaying them later ends with conflict
+            LOGGER.error("Order journal checkpoint failed", e);
+        }
+    }
+
+    /**
+     * @return orders which failed every attempt
+     */
+    private List<QueuedOrder> flushWithRetries(List<QueuedOrder> batch) throws InterruptedException {
+        List<QueuedOrder> failedOrders = flush(batch);
+        for (int retry = 1; retry <= retries && !failedOrders.isEmpty(); retry++) {
+            Thread.sleep(retryBackoffMillis * retry);
+            LOGGER.info("Retrying {} failed orders, attempt {} of {}", failedOrders.size(), retry, retries);
+            failedOrders = flush(failedOrders);
+        }
+        failedOrders.forEach(queuedOrder -> ingestions.put(queuedOrder.id, ingestionInfo(queuedOrder, OrderIngestionInfo.Status.FAILED, null)));
+        return failedOrders;
+    }
+
+    /**
+     * @return orders which failed, created and conflicting ones get their status
+     */
+    private List<QueuedOrder> flush(List<QueuedOrder> batch) {
+        List<QueuedOrder> failedOrders = new ArrayList<>();
+        try {
+            List<Order> savedOrders = orderService.saveAll(batch.stream()
+                                                                .map(queuedOrder -> copyOfNewOrder(queuedOrder.order))
+                                                                .collect(Collectors.toList()));
+            for (int i = 0; i < batch.size(); i++) {
+                ingestions.put(batch.get(i).id, ingestionInfo(batch.get(i), OrderIngestionInfo.Status.CREATED, savedOrders.get(i)));
+            }
+        } catch (DataIntegrityViolationException e) {
+            //whole batch is rolled back, only orders that cannot be saved on their own are rejected
+            for (QueuedOrder queuedOrder : batch) {
+                try {
+                    Optional<Order> savedOrder = orderService.saveIfNotPlaced(copyOfNewOrder(queuedOrder.order));
+                    ingestions.put(queuedOrder.id, ingestionInfo(queuedOrder,
+                                                                 savedOrder.isPresent() ? OrderIngestionInfo.Status.CREATED : OrderIngestionInfo.Status.CONFLICT,
+                                                                 savedOrder.orElse(null)));
+                } catch (RuntimeException orderException) {
+                    LOGGER.error("Order ingestion of " + queuedOrder.id + " failed", orderException);
+                    failedOrders.add(queuedOrder);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Order ingestion batch failed", e);
+            failedOrders.addAll(batch);
+        }
+        return failedOrders;
+    }
+
+    //ids given to orders of a rolled back batch must not be reused, so every attempt saves a fresh copy
+    private static Order copyOfNewOrder(Order order) {
+        return Order.builder()
+                    .email(order.getEmail())
+                    .orderDate(order.getOrderDate())
+                    .orderDetail(order.getOrderDetail()
+                                      .stream()
+                                      .map(orderDetail -> OrderDetail.builder()
+                                                                     .product(orderDetail.getProduct())
+                                                                     .price(orderDetail.getPrice())
+                                                                     .quantity(orderDetail.getQuantity())
+                                                                     .build())
+                                      .collect(Collectors.toSet()))
+                    .total(order.getTotal())
+                    .build();
+    }
+
+    private static JournaledOrder convertToJournaledOrder(QueuedOrder queuedOrder) {
+        return JournaledOrder.builder()
+                             .ingestionId(queuedOrder.id)
+                             .email(queuedOrder.order.getEmail())
+                             .orderDate(queuedOrder.order.getOrderDate())
+                             .total(queuedOrder.order.getTotal())
+                             .orderDetails(queuedOrder.order.getOrderDetail()
+                                                            .stream()
+                                                            .map(orderDetail -> JournaledOrderDetail.builder()
+                                                                                                    .productName(orderDetail.getProduct().getName())
+                                                                                                    .price(orderDetail.getPrice().getPrice())
+                                                                                                    .priceFromDate(orderDetail.getPrice().getFromDate())
+                                                                                                    .quantity(orderDetail.getQuantity())
+                                                                                                    .build())
+                                                            .collect(Collectors.toList()))
+                             .build();
+    }
+
+    private Optional<Order> convertToOrder(JournaledOrder journaledOrder) {
+        Map<String, Product> products = productService.getProductsByNames(journaledOrder.getOrderDetails()
+                                                                                        .stream()
+                                                                                        .map(JournaledOrderDetail::getProductName)
+                                                                                        .collect(Collectors.toSet()));
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        for (JournaledOrderDetail journaledOrderDetail : journaledOrder.getOrderDetails()) {
+            Product product = products.get(journaledOrderDetail.getProductName());
+            Optional<Price> price = Optional.ofNullable(product)
+                                            .flatMap(p -> p.getPrices()
+                                                           .stream()
+                                                           .filter(pr -> journaledOrderDetail.getPriceFromDate().equals(pr.getFromDate())
+                                                                   && journaledOrderDetail.getPrice().compareTo(pr.getPrice()) == 0)
+                                                           .findFirst());
+            if (!price.isPresent()) {
+                return Optional.empty();
+            }
+            orderDetails.add(OrderDetail.builder()
+                                        .product(product)
+                                        .price(price.get())
+                                        .quantity(journaledOrderDetail.getQuantity())
+                                        .build());
+        }
+
+        return Optional.of(Order.builder()
+                                .email(journaledOrder.getEmail())
+                                .orderDate(journaledOrder.getOrderDate())
+                                .orderDetail(orderDetails)
+                                .total(journaledOrder.getTotal())
+                                .build());
+    }
+
+    private static OrderIngestionInfo ingestionInfo(QueuedOrder queuedOrder, OrderIngestionInfo.Status status, Order savedOrder) {
+        return OrderIngestionInfo.builder()
+                                 .id(queuedOrder.id)
+                                 .status(status)
+                                 .email(queuedOrder.order.getEmail())
+                                 .orderDate(queuedOrder.order.getOrderDate())
+                                 .order(savedOrder == null ? null : OrderHelper.convertToOrderInfo(savedOrder))
+                                 .build();
+    }
+
+    private static class QueuedOrder {
+
+        private final String id;
+        private final Order order;
+        //null when the journal is disabled
+        private final Long journalPosition;
+
+        QueuedOrder(String id, Order order, Long journalPosition) {
+            this.id = id;
+            this.order = order;
+            this.journalPosition = journalPosition;
+        }
+    }
+}
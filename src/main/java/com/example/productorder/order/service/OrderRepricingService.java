@@ -0,0 +1,253 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.*;
+import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Prices all orders placed in a date range as if they were placed on other date.
+ * <p>
+ * Orders are read in keyset paged chunks of projections and every chunk is priced in parallel against prices of all
+ * products on the date, looked up once per job. Repriced orders of a chunk are appended to a newline delimited JSON
+ * file of the job, so memory used by a job does not grow with the number of orders. The file is deleted with the job.
+ * <p>
+ * Only finished jobs count towards the size of the jobs cache and expire, a queued or running job is never evicted
+ * while its thread still writes the results file.
+ */
+@Service
+public class OrderRepricingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderRepricingService.class);
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final OrderRepository orderRepository;
+    private final ProductService productService;
+    private final OrderService orderService;
+    private final ObjectWriter repricingWriter;
+    private final int chunkSize;
+    private final ForkJoinPool pricingPool;
+    //jobs run one after another, each of them uses the whole pricing pool
+    private final ExecutorService jobExecutor;
+    private final Cache<String, RepricingJob> jobs;
+
+    @Autowired
+    public OrderRepricingService(OrderRepository orderRepository, ProductService productService, OrderService orderService, ObjectMapper objectMapper,
+                                 @Value("${order.repricing.parallelism:0}") int parallelism,
+                                 @Value("${order.repricing.chunk-size:1000}") int chunkSize,
+                                 @Value("${order.repricing.expire-after-write-seconds:86400}") long expireAfterWriteSeconds) {
+        this.orderRepository = orderRepository;
+        this.productService = productService;
+        this.orderService = orderService;
+        this.repricingWriter = objectMapper.writerFor(OrderRepricing.class)
+                                           .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.chunkSize = chunkSize;
+        this.pricingPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-repricing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long expireAfterWriteNanos = TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds);
+        this.jobs = Caffeine.newBuilder()
+                            .maximumWeight(MAX_FINISHED_JOBS)
+                            .<String, RepricingJob>weigher((id, job) -> job.isFinished() ? 1 : 0)
+                            .expireAfter(new Expiry<String, RepricingJob>() {
+                                @Override
+                                public long expireAfterCreate(String id, RepricingJob job, long currentTime) {
+                                    return job.isFinished() ? expireAfterWriteNanos : Long.MAX_VALUE;
+                                }
+
+                                @Override
+                                public long expireAfterUpdate(String id, RepricingJob job, long currentTime, long currentDuration) {
+                                    return expireAfterCreate(id, job, currentTime);
+                                }
+
+                                @Override
+                                public long expireAfterRead(String id, RepricingJob job, long currentTime, long currentDuration) {
+                                    return currentDuration;
+                                }
+                            })
+                            //finished job is written again with the same value to be weighed and timed, its file is still needed
+                            .removalListener((String id, RepricingJob job, RemovalCause cause) -> {
+                                if (cause != RemovalCause.REPLACED) {
+                                    deleteResults(job);
+                                }
+                            })
+                            .build();
+    }
+
+    public RepricingJobInfo startRepricing(RepricingRequest repricingRequest, LocalDateTime now) {
+        String id = UUID.randomUUID().toString();
+        Path resultsFile;
+        try {
+            resultsFile = Files.createTempFile("repricing-" + id, ".ndjson");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        RepricingJob job = new RepricingJob(id,
+                                            repricingRequest.getFromDate(),
+                                            repricingRequest.getToDate(),
+                                            Optional.ofNullable(repricingRequest.getDate()).orElse(now),
+                                            resultsFile);
+        jobs.put(job.getId(), job);
+        jobExecutor.execute(() -> reprice(job));
+        return job.toJobInfo();
+    }
+
+    public Optional<RepricingJobInfo> getRepricingJob(String id) {
+        return Optional.ofNullable(jobs.getIfPresent(id))
+                       .map(RepricingJob::toJobInfo);
+    }
+
+    /**
+     * Opens repriced orders of the job, one JSON per line in order date order, complete only once the job is done.
+     * The opened stream stays readable when the job expires and its file is deleted meanwhile.
+     *
+     * @return empty when the job or its results file does not exist
+     */
+    public Optional<InputStream> openRepricedOrders(String id) throws IOException {
+        RepricingJob job = jobs.getIfPresent(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.newInputStream(job.getResultsFile()));
+        } catch (NoSuchFileException e) {
+            //job expired right after the lookup
+            return Optional.empty();
+        }
+    }
+
+    private void reprice(RepricingJob job) {
+        job.start();
+        try (OutputStream results = new BufferedOutputStream(Files.newOutputStream(job.getResultsFile()))) {
+            //immutable snapshot shared by all pricing threads
+            Map<String, Product> products = new HashMap<>();
+            Map<String, Price> prices = new HashMap<>();
+            for (Product product : productService.getAllProducts()) {
+                products.put(product.getName(), product);
+                Price price = product.getPriceTimeline().lower(job.getDate());
+                if (price != null) {
+                    prices.put(product.getName(), price);
+                }
+            }
+
+            OrderCursor after = null;
+            List<OrderView> orders;
+            while (!(orders = orderRepository.findOrderViews(job.getFromDate(), job.getToDate(), after, chunkSize)).isEmpty()) {
+                Map<Long, List<OrderDetailView>> orderDetails = orderRepository.findOrderDetailViews(orders.stream()
+                                                                                                          .map(OrderView::getId)
+                                                                                                          .collect(Collectors.toList()))
+                                                                               .stream()
+                                                                               .collect(Collectors.groupingBy(OrderDetailView::getOrderId));
+                List<OrderView> chunk = orders;
+                List<OrderRepricing> repricedChunk = pricingPool.submit(() -> chunk.parallelStream()
+                                                                                   .map(order -> reprice(order, orderDetails.getOrDefault(order.getId(), Collections.emptyList()), products, prices))
+                                                                                   .collect(Collectors.toList()))
+                                                                .get();
+                for (OrderRepricing orderRepricing : repricedChunk) {
+                    repricingWriter.writeValue(results, orderRepricing);
+                    results.write('\n');
+                }
+                job.add(repricedChunk);
+
+                OrderView lastOrder = orders.get(orders.size() - 1);
+                after = new OrderCursor(lastOrder.getOrderDate(), lastOrder.getId());
+                RepricingJobInfo progress = job.toJobInfo();
+                LOGGER.info("Repricing {}: {} orders repriced, {} without price, {} orders/s", job.getId(), progress.getRepricedOrders(), progress.getUnpricedOrders(), Math.round(progress.getOrdersPerSecond()));
+            }
+            finish(job, RepricingJobInfo.Status.DONE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, RepricingJobInfo.Status.FAILED);
+        } catch (Exception e) {
+            LOGGER.error("Repricing " + job.getId() + " failed", e);
+            finish(job, RepricingJobInfo.Status.FAILED);
+        }
+    }
+
+    private void finish(RepricingJob job, RepricingJobInfo.Status status) {
+        job.finish(status);
+        //weight and expiry of the job are evaluated again, job removed meanwhile is not written back
+        jobs.asMap().replace(job.getId(), job, job);
+    }
+
+    private OrderRepricing reprice(OrderView order, List<OrderDetailView> orderDetails, Map<String, Product> products, Map<String, Price> prices) {
+        BigDecimal orderSum = Optional.ofNullable(order.getTotal())
+                                      .orElseGet(() -> orderDetails.stream()
+                                                                   .map(oDet -> oDet.getPrice().multiply(BigDecimal.valueOf(oDet.getQuantity())))
+                                                                   .reduce(BigDecimal.ZERO, BigDecimal::add)
+                                                                   .setScale(2, RoundingMode.HALF_UP));
+
+        BigDecimal repricedOrderSum = null;
+        if (orderDetails.stream().allMatch(oDet -> prices.containsKey(oDet.getProductName()))) {
+            //lines of the same product are merged, equal order details would collapse in the set
+            Set<OrderDetail> orderDetailsWithPriceOnDate = orderDetails.stream()
+                                                                       .collect(Collectors.groupingBy(OrderDetailView::getProductName, Collectors.summingLong(OrderDetailView::getQuantity)))
+                                                                       .entrySet()
+                                                                       .stream()
+                                                                       .map(quantity -> OrderDetail.builder()
+                                                                                                   .product(products.get(quantity.getKey()))
+                                                                                                   .price(prices.get(quantity.getKey()))
+                                                                                                   .quantity(quantity.getValue())
+                                                                                                   .build())
+                                                                       .collect(Collectors.toSet());
+            repricedOrderSum = orderService.countOrderTotal(orderDetailsWithPriceOnDate);
+        }
+
+        return OrderRepricing.builder()
+                             .email(order.getEmail())
+                             .orderDate(order.getOrderDate())
+                             .orderSum(orderSum)
+                             .repricedOrderSum(repricedOrderSum)
+                             .build();
+    }
+
+    private static void deleteResults(RepricingJob job) {
+        if (job == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(job.getResultsFile());
+        } catch (IOException e) {
+            LOGGER.warn("Results of repricing " + job.getId() + " were not deleted", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        pricingPool.shutdownNow();
+        jobs.asMap().values().forEach(OrderRepricingService::deleteResults);
+    }
+}
@@ -1,41 +1,158 @@
 package com.example.productorder.order.service;
 
-import com.example.productorder.order.domain.NewOrderDetailInfo;
-import com.example.productorder.order.domain.NewOrderInfo;
-import com.example.productorder.order.domain.Order;
-import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.*;
+import com.example.productorder.order.helper.OrderHelper;
+import com.example.productorder.order.repository.CustomerOrderTotalRepository;
 import com.example.productorder.order.repository.OrderRepository;
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceTimeline;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.helper.PriceHelper;
 import com.example.productorder.product.service.ProductService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
+    private static final int EXPORT_PAGE_SIZE = 500;
+
     private final OrderRepository orderRepository;
+    private final CustomerOrderTotalRepository customerOrderTotalRepository;
     private final ProductService productService;
+    private final Validator validator;
+    private final OrderWhatIfCache orderWhatIfCache;
+    private final CustomerOrdersCache customerOrdersCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Autowired
-    public OrderService(OrderRepository orderRepository, ProductService productService) {
+    public OrderService(OrderRepository orderRepository, CustomerOrderTotalRepository customerOrderTotalRepository, ProductService productService,
+                        Validator validator, OrderWhatIfCache orderWhatIfCache, CustomerOrdersCache customerOrdersCache,
+                        PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher) {
         this.orderRepository = orderRepository;
+        this.customerOrderTotalRepository = customerOrderTotalRepository;
         this.productService = productService;
+        this.validator = validator;
+        this.orderWhatIfCache = orderWhatIfCache;
+        this.customerOrdersCache = customerOrdersCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
     }
 
 
+    @Transactional
     public Order save(Order order) {
-        return orderRepository.save(order);
+        if (order.getTotal() == null) {
+            order.setTotal(countOrderTotal(order.getOrderDetail()));
+        }
+        Order savedOrder = orderRepository.save(order);
+        addToCustomerTotals(Collections.singletonList(order));
+        return savedOrder;
+    }
+
+    /**
+     * Saves a new order, the unique index on customer email and order date is the duplicate check.
+     *
+     * @return empty when the customer already placed an order with the same date
+     */
+    public Optional<Order> saveIfNotPlaced(Order order) {
+        if (order.getTotal() == null) {
+            order.setTotal(countOrderTotal(order.getOrderDetail()));
+        }
+        try {
+            //duplicate has to roll back the whole transaction, so it is not started by this service method
+            return Optional.of(transactionTemplate.execute(status -> {
+                Order savedOrder = orderRepository.saveAndFlush(order);
+                addToCustomerTotals(Collections.singletonList(order));
+                return savedOrder;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateOrder(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves new orders in one transaction, none of them is saved when any of them is already placed.
+     */
+    @Transactional
+    public List<Order> saveAll(List<Order> orders) {
+        orders.stream()
+              .filter(order -> order.getTotal() == null)
+              .forEach(order -> order.setTotal(countOrderTotal(order.getOrderDetail())));
+        List<Order> savedOrders = orderRepository.saveAll(orders);
+        addToCustomerTotals(orders);
+        return savedOrders;
+    }
+
+    /**
+     * Adds orders to lifetime totals of their customers, must run in the transaction saving the orders.
+     */
+    private void addToCustomerTotals(Collection<Order> orders) {
+        Map<String, List<Order>> ordersByEmail = orders.stream().collect(Collectors.groupingBy(Order::getEmail));
+        ordersByEmail.forEach((email, customerOrders) -> {
+            BigDecimal total = customerOrders.stream()
+                                             .map(Order::getTotal)
+                                             .reduce(BigDecimal.ZERO, BigDecimal::add);
+            customerOrderTotalRepository.add(email, customerOrders.size(), total);
+        });
+        eventPublisher.publishEvent(new OrdersPlacedEvent(ordersByEmail.keySet()));
+    }
+
+    private static boolean isDuplicateOrder(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraintName = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        if (constraintName == null) {
+            return false;
+        }
+        //H2 dialect extracts the index name followed by the rest of the message, e.g. "IDX_INDEX_8 ON PUBLIC.ORDERS(...) VALUES ...",
+        //the unique constraint is checked by an index named after it
+        String indexName = constraintName.replace("\"", "").trim().split("\\s")[0].toUpperCase(Locale.ROOT);
+        indexName = indexName.substring(indexName.lastIndexOf('.') + 1);
+        return indexName.equals(Order.EMAIL_ORDER_DATE_INDEX) || indexName.startsWith(Order.EMAIL_ORDER_DATE_INDEX + "_INDEX_");
+    }
+
+    @Transactional
+    public int backfillOrderTotals() {
+        List<Order> orders = orderRepository.findFirst500ByTotalIsNull();
+        orders.forEach(order -> order.setTotal(countOrderTotal(order.getOrderDetail())));
+        orderRepository.saveAll(orders);
+        return orders.size();
+    }
+
+    /**
+     * Creates lifetime totals of customers whose orders were persisted before the totals existed, order totals have to
+     * be backfilled first.
+     *
+     * @return number of customers whose totals were created
+     */
+    @Transactional
+    public int backfillCustomerOrderTotals() {
+        return customerOrderTotalRepository.insertMissingTotals();
     }
 
     public List<Order> getAllOrders() {
@@ -46,6 +163,10 @@ public class OrderService {
         return orderRepository.findByEmailAndOrderDate(email, date);
     }
 
+    public Optional<Long> getOrderIdByEmailAndDate(String email, LocalDateTime date) {
+        return orderRepository.findIdByEmailAndOrderDate(email, date);
+    }
+
     public List<Order> getOrders(LocalDateTime from, LocalDateTime to) {
 
         List<Order> orders;
@@ -62,51 +183,352 @@ public class OrderService {
         return orders;
     }
 
+    public List<OrderInfo> getOrderInfos(LocalDateTime from, LocalDateTime to) {
+        return convertToOrderInfos(orderRepository.findOrderViews(from, to, null, null));
+    }
+
+    public OrderPage getOrdersPage(LocalDateTime from, LocalDateTime to, OrderCursor after, int limit) {
+        //one extra order tells whether there is a next page
+        return convertToOrderPage(orderRepository.findOrderViews(from, to, after, limit + 1), limit);
+    }
+
+    /**
+     * @return empty when the customer has not placed any order
+     */
+    public Optional<CustomerOrdersInfo> getCustomerOrders(String email, OrderCursor after, int limit) {
+        return customerOrderTotalRepository.findById(email)
+                                           .filter(customerOrderTotal -> customerOrderTotal.getOrderCount() > 0)
+                                           .map(customerOrderTotal -> {
+                                               OrderPage orderPage = convertToOrderPage(orderRepository.findOrderViewsByEmail(email, after, limit + 1), limit);
+                                               return CustomerOrdersInfo.builder()
+                                                                        .email(email)
+                                                                        .orderCount(customerOrderTotal.getOrderCount())
+                                                                        .total(customerOrderTotal.getTotal())
+                                                                        .orders(orderPage.getOrders())
+                                                                        .nextCursor(orderPage.getNextCursor())
+                                                                        .build();
+                                           });
+    }
+
+    /**
+     * First page of customer orders, cached until the customer places a new order. Cache is keyed only by email,
+     * so every call has to ask for the same limit.
+     */
+    public Optional<CustomerOrdersInfo> getCachedCustomerOrders(String email, int limit) {
+        return customerOrdersCache.get(email, key -> getCustomerOrders(key, null, limit))
+                                  .map(customerOrders -> CustomerOrdersInfo.builder()
+                                                                           .email(customerOrders.getEmail())
+                                                                           .orderCount(customerOrders.getOrderCount())
+                                                                           .total(customerOrders.getTotal())
+                                                                           .orders(withCurrentProducts(customerOrders.getOrders()))
+                                                                           .nextCursor(customerOrders.getNextCursor())
+                                                                           .build());
+    }
+
+    //cached orders keep products of the time they were cached, prices added since come from the product cache
+    private List<OrderInfo> withCurrentProducts(List<OrderInfo> orderInfos) {
+        Map<String, Product> products = productService.getProductsByNames(orderInfos.stream()
+                                                                                    .flatMap(orderInfo -> orderInfo.getOrderDetail().stream())
+                                                                                    .map(orderDetail -> orderDetail.getProduct().getName())
+                                                                                    .collect(Collectors.toSet()));
+        return orderInfos.stream()
+                         .map(orderInfo -> OrderHelper.withProducts(orderInfo, products))
+                         .collect(Collectors.toList());
+    }
+
+    private OrderPage convertToOrderPage(List<OrderView> orders, int limit) {
+        OrderCursor nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            OrderView lastOrder = orders.get(limit - 1);
+            nextCursor = OrderCursor.builder()
+                                    .orderDate(lastOrder.getOrderDate())
+                                    .id(lastOrder.getId())
+                                    .build();
+        }
+
+        return OrderPage.builder()
+                        .orders(convertToOrderInfos(orders))
+                        .nextCursor(nextCursor)
+                        .build();
+    }
+
+    private List<OrderInfo> convertToOrderInfos(List<OrderView> orders) {
+        Map<Long, List<OrderDetailView>> orderDetails = orderRepository.findOrderDetailViews(orders.stream()
+                                                                                                  .map(OrderView::getId)
+                                                                                                  .collect(Collectors.toList()))
+                                                                       .stream()
+                                                                       .collect(Collectors.groupingBy(OrderDetailView::getOrderId));
+        //price history of ordered products is part of the order response, products are mostly cached
+        Map<String, Product> products = productService.getProductsByNames(orderDetails.values()
+                                                                                      .stream()
+                                                                                      .flatMap(Collection::stream)
+                                                                                      .map(OrderDetailView::getProductName)
+                                                                                      .collect(Collectors.toSet()));
+        return orders.stream()
+                     .map(order -> OrderHelper.convertToOrderInfo(order, orderDetails.getOrDefault(order.getId(), Collections.emptyList()), products))
+                     .collect(Collectors.toList());
+    }
+
+    /**
+     * Passes all orders between the dates to the consumer, orders are read in keyset pages, so each page costs
+     * the same few queries no matter how many orders and products it has.
+     */
+    public void exportOrders(LocalDateTime from, LocalDateTime to, Consumer<OrderInfo> orderConsumer) {
+        OrderCursor after = null;
+        List<OrderView> orders;
+        do {
+            orders = orderRepository.findOrderViews(from, to, after, EXPORT_PAGE_SIZE);
+            convertToOrderInfos(orders).forEach(orderConsumer);
+            if (!orders.isEmpty()) {
+                OrderView lastOrder = orders.get(orders.size() - 1);
+                after = OrderCursor.builder()
+                                   .orderDate(lastOrder.getOrderDate())
+                                   .id(lastOrder.getId())
+                                   .build();
+            }
+        } while (orders.size() == EXPORT_PAGE_SIZE);
+    }
+
+    public Optional<OrderInfo> getCachedOrderIfItWasPlacedOnSpecificDate(Long orderId, LocalDateTime date) {
+        return orderWhatIfCache.get(orderId, date)
+                               .map(orderInfo -> withCurrentProducts(Collections.singletonList(orderInfo)).get(0));
+    }
+
+    public OrderInfo getOrderIfItWasPlacedOnSpecificDate(Order order, LocalDateTime date) {
+        Set<OrderDetail> orderDetailsWithPriceOnDate = convertToOrderDetailsWithPriceOnDate(order, date);
+        OrderInfo orderInfo = OrderHelper.convertToOrderInfo(order, countOrderTotal(orderDetailsWithPriceOnDate));
+        //a price saved while the total was counted may stay cached until it expires
+        orderWhatIfCache.put(order.getId(), date, orderInfo, orderDetailsWithPriceOnDate.stream()
+                                                                                       .collect(Collectors.toMap(oDet -> oDet.getProduct().getName(), OrderDetail::getPrice, (p1, p2) -> p1)));
+        return orderInfo;
+    }
+
     public BigDecimal countOrderTotalIfItWasPlacedOnSpecificDate(Order order, LocalDateTime localDateTime) {
-        Set<OrderDetail> orderDetailsWithPriceOnDate = order.getOrderDetail()
-                                                            .stream()
-                                                            .map(oDet -> OrderDetail.builder()
-                                                                                     .price(Optional.ofNullable(getPriceClosestToDate(localDateTime, oDet.getProduct())).orElseThrow(() -> new IllegalArgumentException("Price for such date does not exist!!!")))
-                                                                                     .product(oDet.getProduct())
-                                                                                     .quantity(oDet.getQuantity())
-                                                                                     .build())
-                                                            .collect(Collectors.toSet());
+        return countOrderTotal(convertToOrderDetailsWithPriceOnDate(order, localDateTime));
+    }
+
+    public List<OrderSumChange> getOrderSumTimeline(Order order, LocalDateTime from, LocalDateTime to) {
+        Map<String, Long> quantities = order.getOrderDetail()
+                                            .stream()
+                                            .collect(Collectors.groupingBy(oDet -> oDet.getProduct().getName(), Collectors.summingLong(OrderDetail::getQuantity)));
+        Map<String, Product> products = order.getOrderDetail()
+                                             .stream()
+                                             .map(OrderDetail::getProduct)
+                                             .collect(Collectors.toMap(Product::getName, Function.identity(), (p1, p2) -> p1));
 
-        return countOrderTotal(orderDetailsWithPriceOnDate);
+        //prices valid right after from date are the starting point, later ones until to date are changes of the sum
+        Map<String, BigDecimal> currentPrices = new HashMap<>();
+        //timelines are already sorted by fromDate, so changes of all products are merged instead of collected and sorted
+        PriorityQueue<PriceChanges> priceChanges = new PriorityQueue<>(Comparator.comparing(PriceChanges::getFromDate));
+        products.forEach((productName, product) -> {
+            PriceTimeline timeline = product.getPriceTimeline();
+            int first = from == null ? 0 : timeline.higherIndex(from);
+            int end = to == null ? timeline.size() : timeline.ceilingIndex(to);
+            if (first > 0 && first - 1 < end) {
+                currentPrices.put(productName, timeline.get(first - 1).getPrice());
+            }
+            if (first < end) {
+                priceChanges.add(new PriceChanges(productName, timeline, first, end));
+            }
+        });
+
+        BigDecimal orderSum = currentPrices.entrySet()
+                                           .stream()
+                                           .map(price -> price.getValue().multiply(BigDecimal.valueOf(quantities.get(price.getKey()))))
+                                           .reduce(BigDecimal.ZERO, BigDecimal::add);
+        List<OrderSumChange> orderSumChanges = new ArrayList<>();
+        if (from != null && currentPrices.size() == products.size()) {
+            orderSumChanges.add(new OrderSumChange(from, orderSum.setScale(2, RoundingMode.HALF_UP)));
+        }
+
+        //one pass over price changes of all products, sum is updated by the difference of changed price
+        while (!priceChanges.isEmpty()) {
+            LocalDateTime date = priceChanges.peek().getFromDate();
+            while (!priceChanges.isEmpty() && priceChanges.peek().getFromDate().isEqual(date)) {
+                PriceChanges productPriceChanges = priceChanges.poll();
+                String productName = productPriceChanges.getProductName();
+                BigDecimal newPrice = productPriceChanges.getPrice().getPrice();
+                BigDecimal oldPrice = Optional.ofNullable(currentPrices.put(productName, newPrice)).orElse(BigDecimal.ZERO);
+                orderSum = orderSum.add(newPrice.subtract(oldPrice).multiply(BigDecimal.valueOf(quantities.get(productName))));
+                if (productPriceChanges.next()) {
+                    priceChanges.add(productPriceChanges);
+                }
+            }
+            if (currentPrices.size() == products.size()) {
+                BigDecimal roundedOrderSum = orderSum.setScale(2, RoundingMode.HALF_UP);
+                if (orderSumChanges.isEmpty() || orderSumChanges.get(orderSumChanges.size() - 1).getOrderSum().compareTo(roundedOrderSum) != 0) {
+                    orderSumChanges.add(new OrderSumChange(date, roundedOrderSum));
+                }
+            }
+        }
+
+        return orderSumChanges;
+    }
+
+    private Set<OrderDetail> convertToOrderDetailsWithPriceOnDate(Order order, LocalDateTime localDateTime) {
+        return order.getOrderDetail()
+                    .stream()
+                    .map(oDet -> OrderDetail.builder()
+                                             .price(Optional.ofNullable(getPriceClosestToDate(localDateTime, oDet.getProduct())).orElseThrow(() -> new IllegalArgumentException("Price for such date does not exist!!!")))
+                                             .product(oDet.getProduct())
+                                             .quantity(oDet.getQuantity())
+                                             .build())
+                    .collect(Collectors.toSet());
     }
 
     public BigDecimal countOrderTotal(Set<OrderDetail> orderDetails) {
+        //prices in cents are summed up without allocation, result is the same as the exact BigDecimal total
+        long totalInMinorUnits = 0;
+        for (OrderDetail orderDetail : orderDetails) {
+            long priceInMinorUnits = orderDetail.getPrice().getPriceInMinorUnits();
+            if (priceInMinorUnits == PriceHelper.NOT_IN_MINOR_UNITS) {
+                return countOrderTotalExact(orderDetails);
+            }
+            try {
+                totalInMinorUnits = Math.addExact(totalInMinorUnits, Math.multiplyExact(priceInMinorUnits, orderDetail.getQuantity()));
+            } catch (ArithmeticException e) {
+                return countOrderTotalExact(orderDetails);
+            }
+        }
+        return BigDecimal.valueOf(totalInMinorUnits, PriceHelper.MINOR_UNITS_SCALE);
+    }
+
+    BigDecimal countOrderTotalExact(Set<OrderDetail> orderDetails) {
         return orderDetails.stream().map(oD -> oD.getPrice().getPrice().multiply(new BigDecimal(oD.getQuantity()))).reduce(BigDecimal.ZERO, BigDecimal::add).setScale(2, RoundingMode.HALF_UP);
     }
 
     public Order createNewOrder(NewOrderInfo newOrderInfo, LocalDateTime orderDate) {
-        Map<String, NewOrderDetailInfo> mergeNewOrderDetailInfo = newOrderInfo.getProductsToOrder().stream()
-                                                                              .collect(Collectors.groupingBy(NewOrderDetailInfo::getProductName,
-                                                                                      Collectors.collectingAndThen(
-                                                                                              reduceNewOrderDetailInfoWithSameProductNames(), Optional::get)));
-
-        Set<Product> uniqueProducts = mergeNewOrderDetailInfo.keySet()
-                                                             .stream()
-                                                             .map(productName -> productService.getProductByName(productName).orElse(null))
-                                                             .collect(Collectors.toSet());
-
-        Set<OrderDetail> orderDetailsToSave = mergeNewOrderDetailInfo.values()
-                                                                     .stream()
-                                                                     .map(nODI -> OrderDetail.builder()
-                                                                                             .product(getProduct(uniqueProducts, nODI))
-                                                                                             .price(Optional.ofNullable(getPriceClosestToDate(orderDate, getProduct(uniqueProducts, nODI))).orElseThrow(() -> new IllegalArgumentException("Price for such date does not exist!!!")))
-                                                                                             .quantity(nODI.getQuantity())
-                                                                                             .build())
-                                                                     .collect(Collectors.toSet());
+        OrderPricingPlan pricingPlan = prepareOrderPricingPlan(newOrderInfo);
+        if (!pricingPlan.allProductsExist()) {
+            throw new IllegalArgumentException("At least one of the ordered products does not exist!!!");
+        }
+        return createNewOrder(pricingPlan, orderDate);
+    }
+
+    public Order createNewOrder(OrderPricingPlan pricingPlan, LocalDateTime orderDate) {
+        Set<OrderDetail> orderDetailsToSave = pricingPlan.getOrderDetails()
+                                                         .stream()
+                                                         .map(nODI -> OrderDetail.builder()
+                                                                                 .product(pricingPlan.getProduct(nODI.getProductName()))
+                                                                                 .price(Optional.ofNullable(getPriceClosestToDate(orderDate, pricingPlan.getProduct(nODI.getProductName()))).orElseThrow(() -> new IllegalArgumentException("Price for such date does not exist!!!")))
+                                                                                 .quantity(nODI.getQuantity())
+                                                                                 .build())
+                                                         .collect(Collectors.toSet());
 
         return Order.builder()
                     .orderDate(orderDate)
-                    .email(newOrderInfo.getEmail())
+                    .email(pricingPlan.getEmail())
                     .orderDetail(orderDetailsToSave)
+                    .total(countOrderTotal(orderDetailsToSave))
                     .build();
 
     }
 
+    public OrderPricingPlan prepareOrderPricingPlan(NewOrderInfo newOrderInfo) {
+        Map<String, NewOrderDetailInfo> mergeNewOrderDetailInfo = mergeNewOrderDetailInfo(newOrderInfo);
+        return prepareOrderPricingPlan(newOrderInfo, mergeNewOrderDetailInfo, productService.getProductsByNames(mergeNewOrderDetailInfo.keySet()));
+    }
+
+    @Transactional
+    public List<OrderBatchResult> createNewOrders(List<NewOrderInfo> newOrderInfos, LocalDateTime orderDate) {
+        OrderBatchResult[] results = new OrderBatchResult[newOrderInfos.size()];
+        Map<Integer, Map<String, NewOrderDetailInfo>> mergedOrderDetails = new HashMap<>();
+
+        for (int i = 0; i < newOrderInfos.size(); i++) {
+            String validationMessage = validate(newOrderInfos.get(i));
+            if (validationMessage != null) {
+                results[i] = batchResult(i, OrderBatchResult.Status.INVALID, validationMessage);
+            } else {
+                mergedOrderDetails.put(i, mergeNewOrderDetailInfo(newOrderInfos.get(i)));
+            }
+        }
+
+        //one product lookup and one duplicate check shared by the whole batch
+        Map<String, Product> products = productService.getProductsByNames(mergedOrderDetails.values()
+                                                                                            .stream()
+                                                                                            .flatMap(orderDetails -> orderDetails.keySet().stream())
+                                                                                            .collect(Collectors.toSet()));
+        Set<String> takenEmails = orderRepository.findByEmailInAndOrderDate(mergedOrderDetails.keySet()
+                                                                                              .stream()
+                                                                                              .map(i -> newOrderInfos.get(i).getEmail())
+                                                                                              .collect(Collectors.toSet()), orderDate)
+                                                 .stream()
+                                                 .map(Order::getEmail)
+                                                 .collect(Collectors.toSet());
+
+        List<Integer> indexesToSave = new ArrayList<>();
+        List<Order> ordersToSave = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, NewOrderDetailInfo>> entry : new TreeMap<>(mergedOrderDetails).entrySet()) {
+            int i = entry.getKey();
+            OrderPricingPlan pricingPlan = prepareOrderPricingPlan(newOrderInfos.get(i), entry.getValue(), products);
+
+            if (!takenEmails.add(pricingPlan.getEmail())) {
+                results[i] = batchResult(i, OrderBatchResult.Status.CONFLICT, "Order with such customer email and date already exists!!!");
+            } else if (!pricingPlan.allProductsExist()) {
+                results[i] = batchResult(i, OrderBatchResult.Status.INVALID, "At least one of the ordered products does not exist!!!");
+            } else {
+                try {
+                    ordersToSave.add(createNewOrder(pricingPlan, orderDate));
+                    indexesToSave.add(i);
+                } catch (IllegalArgumentException e) {
+                    takenEmails.remove(pricingPlan.getEmail());
+                    results[i] = batchResult(i, OrderBatchResult.Status.INVALID, e.getMessage());
+                }
+            }
+        }
+
+        List<Order> savedOrders = orderRepository.saveAll(ordersToSave);
+        addToCustomerTotals(ordersToSave);
+        for (int j = 0; j < savedOrders.size(); j++) {
+            Order savedOrder = savedOrders.get(j);
+            results[indexesToSave.get(j)] = OrderBatchResult.builder()
+                                                            .index(indexesToSave.get(j))
+                                                            .status(OrderBatchResult.Status.CREATED)
+                                                            .order(OrderHelper.convertToOrderInfo(savedOrder))
+                                                            .build();
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private String validate(NewOrderInfo newOrderInfo) {
+        if (newOrderInfo == null || newOrderInfo.getEmail() == null) {
+            return "Order does not contain customer email!!!";
+        }
+        if (newOrderInfo.getProductsToOrder() == null || newOrderInfo.getProductsToOrder().isEmpty()) {
+            return "Order does not contain any products!!!";
+        }
+        return validator.validate(newOrderInfo)
+                        .stream()
+                        .findFirst()
+                        .map(ConstraintViolation::getMessage)
+                        .orElse(null);
+    }
+
+    private OrderBatchResult batchResult(int index, OrderBatchResult.Status status, String message) {
+        return OrderBatchResult.builder()
+                               .index(index)
+                               .status(status)
+                               .message(message)
+                               .build();
+    }
+
+    private OrderPricingPlan prepareOrderPricingPlan(NewOrderInfo newOrderInfo, Map<String, NewOrderDetailInfo> mergeNewOrderDetailInfo, Map<String, Product> products) {
+        return OrderPricingPlan.builder()
+                               .email(newOrderInfo.getEmail())
+                               .orderDetails(mergeNewOrderDetailInfo.values())
+                               .products(products)
+                               .build();
+    }
+
+    private Map<String, NewOrderDetailInfo> mergeNewOrderDetailInfo(NewOrderInfo newOrderInfo) {
+        return newOrderInfo.getProductsToOrder().stream()
+                           .collect(Collectors.groupingBy(NewOrderDetailInfo::getProductName,
+                                   Collectors.collectingAndThen(
+                                           reduceNewOrderDetailInfoWithSameProductNames(), Optional::get)));
+    }
+
     private Collector<NewOrderDetailInfo, ?, Optional<NewOrderDetailInfo>> reduceNewOrderDetailInfoWithSameProductNames() {
         return Collectors.reducing((a, b) -> NewOrderDetailInfo.builder()
                                                                .quantity(a.getQuantity() + b.getQuantity())
@@ -115,15 +537,38 @@ public class OrderService {
     }
 
     private Price getPriceClosestToDate(LocalDateTime date, Product product) {
-        Price priceWithFakeAmount = Price.builder().fromDate(date).price(new BigDecimal(0)).build();
-        return PriceHelper.convertToNavigableSet(product.getPrices()).lower(priceWithFakeAmount);
+        return product.getPriceTimeline().lower(date);
     }
 
-    private Product getProduct(Set<Product> uniqueProducts, NewOrderDetailInfo nODI) {
-        return uniqueProducts.stream()
-                             .filter(product -> product.getName()
-                                                       .equals(nODI.getProductName()))
-                             .findFirst()
-                             .orElse(null);
+    //cursor over prices of one product within a timeline range
+    private static final class PriceChanges {
+
+        private final String productName;
+        private final PriceTimeline timeline;
+        private final int end;
+        private int index;
+
+        private PriceChanges(String productName, PriceTimeline timeline, int first, int end) {
+            this.productName = productName;
+            this.timeline = timeline;
+            this.index = first;
+            this.end = end;
+        }
+
+        String getProductName() {
+            return productName;
+        }
+
+        Price getPrice() {
+            return timeline.get(index);
+        }
+
+        LocalDateTime getFromDate() {
+            return getPrice().getFromDate();
+        }
+
+        boolean next() {
+            return ++index < end;
+        }
     }
 }
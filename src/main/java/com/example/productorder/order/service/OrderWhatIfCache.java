@@ -0,0 +1,147 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceTimeline;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.domain.ProductSavedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of "what if the order was placed on other date" keyed by order id and date.
+ * <p>
+ * Placed orders never change, so a result only gets stale when a product of the order gets a price that changes
+ * which price is valid at the date. Such results are dropped once the saved product is committed, only results of orders with
+ * the product are checked, found by an index of keys by product name kept in step with the cache.
+ */
+@Component
+public class OrderWhatIfCache implements MeterBinder {
+
+    private final Cache<Key, Entry> cache;
+
+    private final Map<String, Set<Key>> keysByProductName = new ConcurrentHashMap<>();
+
+    public OrderWhatIfCache(@Value("${order.what-if-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${order.what-if-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                             .recordStats()
+                             //called atomically with every put and removal (also eviction and expiration) of an entry
+                             .writer(new CacheWriter<Key, Entry>() {
+                                 @Override
+                                 public void write(Key key, Entry entry) {
+                                     entry.getPricesByProductName().keySet().forEach(productName -> index(productName, key));
+                                 }
+
+                                 @Override
+                                 public void delete(Key key, Entry entry, RemovalCause cause) {
+                                     if (entry != null) {
+                                         entry.getPricesByProductName().keySet().forEach(productName -> unindex(productName, key));
+                                     }
+                                 }
+                             })
+                             .build();
+    }
+
+    public Optional<OrderInfo> get(Long orderId, LocalDateTime date) {
+        return Optional.ofNullable(cache.getIfPresent(new Key(orderId, date)))
+                       .map(Entry::getOrderInfo);
+    }
+
+    /**
+     * @param pricesByProductName price of every ordered product the result was counted with
+     */
+    public void put(Long orderId, LocalDateTime date, OrderInfo orderInfo, Map<String, Price> pricesByProductName) {
+        cache.put(new Key(orderId, date), new Entry(orderInfo, pricesByProductName));
+    }
+
+    //dropped after commit, a what-if request running while the transaction runs would cache the old total again otherwise
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.getProduct();
+        Set<Key> keys = keysByProductName.get(product.getName());
+        if (keys == null) {
+            return;
+        }
+        PriceTimeline priceTimeline = product.getPriceTimeline();
+        for (Key key : keys) {
+            //read through the map view so the check does not count as a hit or miss of the cache
+            Entry entry = cache.asMap().get(key);
+            if (entry != null && !Objects.equals(entry.getPricesByProductName().get(product.getName()), priceTimeline.lower(key.getDate()))) {
+                cache.asMap().remove(key, entry);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private void index(String productName, Key key) {
+        keysByProductName.compute(productName, (name, keys) -> {
+            Set<Key> indexedKeys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            indexedKeys.add(key);
+            return indexedKeys;
+        });
+    }
+
+    private void unindex(String productName, Key key) {
+        keysByProductName.computeIfPresent(productName, (name, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    //number of product names with indexed results
+    int indexedProducts() {
+        return keysByProductName.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "orderWhatIf");
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class Key {
+
+        private final Long orderId;
+        private final LocalDateTime date;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final OrderInfo orderInfo;
+        private final Map<String, Price> pricesByProductName;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.OrderRepricing;
+import com.example.productorder.order.domain.RepricingJobInfo;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of one bulk repricing, updated by the job thread and read by requests asking for it. Only sums are kept,
+ * repriced orders are written to the results file chunk by chunk.
+ */
+class RepricingJob {
+
+    private final String id;
+    private final LocalDateTime fromDate;
+    private final LocalDateTime toDate;
+    private final LocalDateTime date;
+    private final Path resultsFile;
+
+    private RepricingJobInfo.Status status = RepricingJobInfo.Status.QUEUED;
+    private long repricedOrders;
+    private long unpricedOrders;
+    private BigDecimal orderSum = BigDecimal.ZERO;
+    private BigDecimal repricedOrderSum = BigDecimal.ZERO;
+    private long startNanos;
+    private long finishNanos;
+
+    RepricingJob(String id, LocalDateTime fromDate, LocalDateTime toDate, LocalDateTime date, Path resultsFile) {
+        this.id = id;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.date = date;
+        this.resultsFile = resultsFile;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    LocalDateTime getFromDate() {
+        return fromDate;
+    }
+
+    LocalDateTime getToDate() {
+        return toDate;
+    }
+
+    LocalDateTime getDate() {
+        return date;
+    }
+
+    //newline delimited JSON of repriced orders, complete once the job is done
+    Path getResultsFile() {
+        return resultsFile;
+    }
+
+    synchronized void start() {
+        status = RepricingJobInfo.Status.RUNNING;
+        startNanos = System.nanoTime();
+    }
+
+    synchronized void add(List<OrderRepricing> repricedChunk) {
+        for (OrderRepricing order : repricedChunk) {
+            if (order.getRepricedOrderSum() == null) {
+                unpricedOrders++;
+            } else {
+                repricedOrders++;
+                orderSum = orderSum.add(order.getOrderSum());
+                repricedOrderSum = repricedOrderSum.add(order.getRepricedOrderSum());
+            }
+        }
+    }
+
+    synchronized void finish(RepricingJobInfo.Status finalStatus) {
+        status = finalStatus;
+        finishNanos = System.nanoTime();
+    }
+
+    synchronized boolean isFinished() {
+        return status == RepricingJobInfo.Status.DONE || status == RepricingJobInfo.Status.FAILED;
+    }
+
+    synchronized RepricingJobInfo toJobInfo() {
+        long elapsedNanos = (status == RepricingJobInfo.Status.RUNNING ? System.nanoTime() : finishNanos) - startNanos;
+        double ordersPerSecond = status == RepricingJobInfo.Status.QUEUED || elapsedNanos <= 0 ? 0 : (repricedOrders + unpricedOrders) * 1e9 / elapsedNanos;
+        return RepricingJobInfo.builder()
+                               .id(id)
+                               .status(status)
+                               .fromDate(fromDate)
+                               .toDate(toDate)
+                               .date(date)
+                               .repricedOrders(repricedOrders)
+                               .unpricedOrders(unpricedOrders)
+                               .orderSum(orderSum)
+                               .repricedOrderSum(repricedOrderSum)
+                               .ordersPerSecond(ordersPerSecond)
+                               .build();
+    }
+}
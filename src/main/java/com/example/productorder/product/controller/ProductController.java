@@ -1,6 +1,8 @@
 package com.example.productorder.product.controller;
 
+import com.example.productorder.config.ApiMetrics;
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceOnDateInfo;
 import com.example.productorder.product.domain.PriceUpdateInfo;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.domain.ProductInfo;
@@ -13,15 +15,16 @@ import io.swagger.annotations.ApiOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.stream.Collectors;
 @SuppressWarnings("unused")
@@ -34,12 +37,14 @@ public class ProductController {
 
     private final ProductService productService;
     private final PriceService priceService;
+    private final ApiMetrics apiMetrics;
 
 
     @Autowired
-    public ProductController(ProductService productService, PriceService priceService) {
+    public ProductController(ProductService productService, PriceService priceService, ApiMetrics apiMetrics) {
         this.productService = productService;
         this.priceService = priceService;
+        this.apiMetrics = apiMetrics;
     }
 
     @GetMapping("/products/{name}")
@@ -71,6 +76,7 @@ public class ProductController {
         Optional<Product> existingProduct = productService.getProductByName(productInfo.getName());
 
         if (bindingResult.hasErrors()) {
+            apiMetrics.countOutcome("createProduct", "validation_failed");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                                  .body(bindingResult.getAllErrors()
                                                     .get(0)
@@ -79,6 +85,7 @@ public class ProductController {
 
         if (existingProduct.isPresent()) {
             LOGGER.info("Product with such name already exists!!!");
+            apiMetrics.countOutcome("createProduct", "conflict");
             return ResponseEntity.status(HttpStatus.CONFLICT)
                                  .build();
         }
@@ -93,45 +100,73 @@ public class ProductController {
     @PutMapping("/products/price")
     @ApiOperation(value = "Update current price of the product")
     ResponseEntity<?> updateProductCurrentPrice(@RequestBody @Valid PriceUpdateInfo priceUpdateInfo, BindingResult bindingResult) {
+        //cached product is only read here, the price is added to the product loaded again by the service
         Optional<Product> existingProduct = productService.getProductByName(priceUpdateInfo.getProductName());
 
         if (existingProduct.isPresent()) {
-            NavigableSet<Price> nsPrices = PriceHelper.convertToNavigableSet(existingProduct.map(Product::getPrices).orElse(null));
-            if (nsPrices.last().getFromDate().isAfter(priceUpdateInfo.getPrice().getFromDate()) || nsPrices.last()
-                                                                                                           .getFromDate()
-                                                                                                           .isEqual(priceUpdateInfo.getPrice().getFromDate())) {
+            Price currentPrice = existingProduct.get().getCurrentPrice();
+            if (currentPrice != null && (currentPrice.getFromDate().isAfter(priceUpdateInfo.getPrice().getFromDate()) || currentPrice.getFromDate()
+                                                                                                                                      .isEqual(priceUpdateInfo.getPrice().getFromDate()))) {
                 LOGGER.info("Product current price from date is newer or equal then date for new current price");
+                apiMetrics.countOutcome("updateProductCurrentPrice", "price_not_newer");
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
 
 
-            existingProduct.get().getPrices().add(priceService.save(priceUpdateInfo));
-            ProductInfo savedProductInfo = ProductHelper.convertToProductInfo(productService.save(existingProduct.get()));
-
-            return ResponseEntity.ok(savedProductInfo);
-        } else {
-            LOGGER.info("Product not found");
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                                 .build();
+            Optional<Product> updatedProduct = productService.addPrice(priceUpdateInfo.getProductName(), PriceHelper.convertToPrice(priceUpdateInfo));
+            if (updatedProduct.isPresent()) {
+                return ResponseEntity.ok(ProductHelper.convertToProductInfo(updatedProduct.get()));
+            }
         }
+
+        LOGGER.info("Product not found");
+        apiMetrics.countOutcome("updateProductCurrentPrice", "product_not_found");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                             .build();
     }
 
     @GetMapping("/products/{name}/price")
-    @ApiOperation(value = "Search current price of the product", response = Price.class)
-    ResponseEntity<?> getCurrentPrice(@PathVariable("name") String productName) {
+    @ApiOperation(value = "Search current price of the product or price valid at the date", response = Price.class)
+    ResponseEntity<?> getCurrentPrice(@PathVariable("name") String productName
+            , @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") @RequestParam(required = false, value = "at") LocalDateTime at) {
+
+        if (at != null) {
+            Optional<Price> priceAt = priceService.getPriceOfProductAt(productName, at);
+            if (priceAt.isPresent()) {
+                return ResponseEntity.ok(priceAt.get());
+            }
 
-        Optional<Product> existingProduct = productService.getProductByName(productName);
+            LOGGER.info("Product or its price at date not found");
+            apiMetrics.countOutcome("getPriceAt", "price_not_found");
+            return ResponseEntity.notFound().build();
+        }
+
+        Optional<Product> existingProduct = productService.getProductWithCurrentPriceByName(productName);
 
         if (existingProduct.isPresent()) {
-            if (existingProduct.get().getPrices() == null || existingProduct.get().getPrices().isEmpty()) {
+            if (existingProduct.get().getCurrentPrice() == null) {
                 LOGGER.info("Current price not found");
+                apiMetrics.countOutcome("getCurrentPrice", "price_not_found");
                 return ResponseEntity.notFound().build();
             }
-            return ResponseEntity.ok(PriceHelper.convertToNavigableSet(existingProduct.map(Product::getPrices).orElse(null)).last());
+            return ResponseEntity.ok(existingProduct.get().getCurrentPrice());
         }
 
         LOGGER.info("Product not found");
+        apiMetrics.countOutcome("getCurrentPrice", "product_not_found");
         return ResponseEntity.notFound().build();
     }
 
+    @PostMapping("/products/prices/batch")
+    @ApiOperation(value = "Search prices of many products valid at the dates", response = PriceOnDateInfo.class, responseContainer = "List")
+    ResponseEntity<?> getPricesAt(@RequestBody List<PriceOnDateInfo> pricesOnDate) {
+        if (pricesOnDate.stream().anyMatch(priceOnDate -> priceOnDate.getProductName() == null || priceOnDate.getAt() == null)) {
+            LOGGER.info("Product name and date are required for every price!!!");
+            apiMetrics.countOutcome("getPricesAt", "validation_failed");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        return ResponseEntity.ok(priceService.getPricesOfProductsAt(pricesOnDate));
+    }
+
 }
@@ -1,24 +1,40 @@
 package com.example.productorder.product.domain;
 
 
+import com.example.productorder.config.PooledSequenceGenerator;
+import com.example.productorder.product.helper.PriceHelper;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Builder
 @ToString
 @Getter
 @Entity(name = "PRICES")
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "prices")
+@Table(indexes = @Index(name = "IDX_PRICES_FROM_DATE", columnList = "fromDate"))
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode
 public class Price {
 
+    private static final long MINOR_UNITS_UNKNOWN = Long.MAX_VALUE;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "PRICES_SEQ")
+    @GenericGenerator(name = "PRICES_SEQ", strategy = PooledSequenceGenerator.STRATEGY,
+                      parameters = {@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "PRICES_SEQ"),
+                                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "500")})
     private Long id;
 
     @NonNull
@@ -27,4 +43,20 @@ public class Price {
     @NonNull
     private LocalDateTime fromDate;
 
-}
\ No newline at end of file
+    //counted on first use, prices never change once created
+    @ToString.Exclude
+    private final transient AtomicLong priceInMinorUnits = new AtomicLong(MINOR_UNITS_UNKNOWN);
+
+    /**
+     * Price in cents or {@link PriceHelper#NOT_IN_MINOR_UNITS} when it has more decimal places or does not fit in a long.
+     */
+    @JsonIgnore
+    public long getPriceInMinorUnits() {
+        long minorUnits = priceInMinorUnits.get();
+        if (minorUnits == MINOR_UNITS_UNKNOWN) {
+            minorUnits = PriceHelper.convertToMinorUnits(price);
+            priceInMinorUnits.set(minorUnits);
+        }
+        return minorUnits;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.productorder.product.domain;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class PriceOnDateInfo {
+
+    @NonNull
+    private String productName;
+
+    @NonNull
+    private LocalDateTime at;
+
+    //price valid at the date, null when product or such price does not exist
+    private Price price;
+}
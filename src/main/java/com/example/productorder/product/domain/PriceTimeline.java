@@ -0,0 +1,161 @@
+package com.example.productorder.product.domain;
+
+import com.example.productorder.product.helper.PriceHelper;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable, fromDate ordered view of a product price history.
+ * <p>
+ * Dates are kept as epoch millis in a primitive array so lookups are a binary search without allocation.
+ * Prices sharing the same fromDate are collapsed the same way {@link PriceHelper#convertToNavigableSet} does.
+ */
+public final class PriceTimeline {
+
+    private static final PriceTimeline EMPTY = new PriceTimeline(new long[0], new Price[0], 0);
+
+    private final long[] fromDates;
+    private final Price[] prices;
+    private final int sourceSize;
+
+    private PriceTimeline(long[] fromDates, Price[] prices, int sourceSize) {
+        this.fromDates = fromDates;
+        this.prices = prices;
+        this.sourceSize = sourceSize;
+    }
+
+    public static PriceTimeline of(Collection<Price> priceCollection) {
+        if (priceCollection == null || priceCollection.isEmpty()) {
+            return EMPTY;
+        }
+
+        Price[] sorted = priceCollection.toArray(new Price[0]);
+        Arrays.sort(sorted, PriceHelper.FROM_DATE_COMPARATOR);
+
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || !sorted[distinct - 1].getFromDate().isEqual(sorted[i].getFromDate())) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        Price[] prices = Arrays.copyOf(sorted, distinct);
+        long[] fromDates = new long[distinct];
+        for (int i = 0; i < distinct; i++) {
+            fromDates[i] = toEpochMillis(prices[i].getFromDate());
+        }
+
+        return new PriceTimeline(fromDates, prices, priceCollection.size());
+    }
+
+    /**
+     * @return true when the timeline was not built from a collection of this size, i.e. a price was added since
+     */
+    public boolean isStale(Collection<Price> priceCollection) {
+        return sourceSize != (priceCollection == null ? 0 : priceCollection.size());
+    }
+
+    public boolean isEmpty() {
+        return prices.length == 0;
+    }
+
+    public int size() {
+        return prices.length;
+    }
+
+    public Price first() {
+        return isEmpty() ? null : prices[0];
+    }
+
+    public Price last() {
+        return isEmpty() ? null : prices[prices.length - 1];
+    }
+
+    /**
+     * @return price with the greatest fromDate strictly before the date, or null
+     */
+    public Price lower(LocalDateTime date) {
+        int index = firstIndexNotBefore(date) - 1;
+        return index >= 0 ? prices[index] : null;
+    }
+
+    /**
+     * @return price with the greatest fromDate before or equal to the date, or null
+     */
+    public Price floor(LocalDateTime date) {
+        int index = firstIndexAfter(date) - 1;
+        return index >= 0 ? prices[index] : null;
+    }
+
+    /**
+     * @return price with the least fromDate after or equal to the date, or null
+     */
+    public Price ceiling(LocalDateTime date) {
+        int index = firstIndexNotBefore(date);
+        return index < prices.length ? prices[index] : null;
+    }
+
+    /**
+     * @return price at the index in fromDate order
+     */
+    public Price get(int index) {
+        return prices[index];
+    }
+
+    /**
+     * @return index of the price with the least fromDate strictly after the date, or size when there is none
+     */
+    public int higherIndex(LocalDateTime date) {
+        return firstIndexAfter(date);
+    }
+
+    /**
+     * @return index of the price with the least fromDate after or equal to the date, or size when there is none
+     */
+    public int ceilingIndex(LocalDateTime date) {
+        return firstIndexNotBefore(date);
+    }
+
+    private int firstIndexNotBefore(LocalDateTime date) {
+        long millis = toEpochMillis(date);
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, millis, date) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstIndexAfter(LocalDateTime date) {
+        long millis = toEpochMillis(date);
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, millis, date) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareAt(int index, long millis, LocalDateTime date) {
+        int result = Long.compare(fromDates[index], millis);
+        //millis drop sub-millisecond precision so ties are resolved on the original dates
+        return result != 0 ? result : prices[index].getFromDate().compareTo(date);
+    }
+
+    private static long toEpochMillis(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1000L + date.getNano() / 1_000_000;
+    }
+}
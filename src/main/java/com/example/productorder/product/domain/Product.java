@@ -1,24 +1,36 @@
 package com.example.productorder.product.domain;
 
 
+import com.example.productorder.config.PooledSequenceGenerator;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 @Builder
 @ToString
 @Getter
 @Entity(name = "PRODUCTS")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "products")
 @NoArgsConstructor(force = true) //sets values to its defaults
 @AllArgsConstructor
 @EqualsAndHashCode
 public class Product {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "PRODUCTS_SEQ")
+    @GenericGenerator(name = "PRODUCTS_SEQ", strategy = PooledSequenceGenerator.STRATEGY,
+                      parameters = {@Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "PRODUCTS_SEQ"),
+                                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50")})
     private Long id;
 
     @NonNull
@@ -26,7 +38,68 @@ public class Product {
     @Size(min = 1, max = 255)
     private final String name;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.PERSIST, orphanRemoval = true )
+    //hashing the collection while Hibernate still loads it fails, product is identified by id and unique name
+    @EqualsAndHashCode.Exclude
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST, orphanRemoval = true )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product-prices")
     private Set<Price> prices;
 
-}
\ No newline at end of file
+    //newest of prices, kept in sync by builder and addPrice so current price is read without loading all prices
+    //eager, a lazy proxy would also end up in prices of products read from second level cache
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @OneToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "CURRENT_PRICE_ID")
+    private Price currentPrice;
+
+    //from date of the oldest price, before it product can not be ordered
+    private LocalDateTime firstPriceDate;
+
+    //built on first lookup and rebuilt once prices were added
+    @ToString.Exclude
+    private final transient AtomicReference<PriceTimeline> priceTimeline = new AtomicReference<>();
+
+    public PriceTimeline getPriceTimeline() {
+        PriceTimeline timeline = priceTimeline.get();
+        if (timeline == null || timeline.isStale(prices)) {
+            timeline = PriceTimeline.of(prices);
+            priceTimeline.set(timeline);
+        }
+        return timeline;
+    }
+
+    public void addPrice(Price price) {
+        if (prices == null) {
+            prices = new HashSet<>();
+        }
+        prices.add(price);
+        priceTimeline.set(null);
+        updatePriceSummary(price);
+    }
+
+    //products saved before the summary columns existed have only their prices
+    public void summarizePrices() {
+        prices.forEach(this::updatePriceSummary);
+    }
+
+    private void updatePriceSummary(Price price) {
+        if (currentPrice == null || price.getFromDate().isAfter(currentPrice.getFromDate())) {
+            currentPrice = price;
+        }
+        if (firstPriceDate == null || price.getFromDate().isBefore(firstPriceDate)) {
+            firstPriceDate = price.getFromDate();
+        }
+    }
+
+    public static class ProductBuilder {
+
+        public Product build() {
+            Product product = new Product(id, name, prices, currentPrice, firstPriceDate);
+            if (product.prices != null) {
+                product.prices.forEach(product::updatePriceSummary);
+            }
+            return product;
+        }
+    }
+
+}
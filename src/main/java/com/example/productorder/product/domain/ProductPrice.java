@@ -0,0 +1,22 @@
+package com.example.productorder.product.domain;
+
+
+import lombok.*;
+
+
+/**
+ * Read-only projection of one price together with the name of its product.
+ */
+@Builder
+@ToString
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ProductPrice {
+
+    @NonNull
+    private final String productName;
+
+    @NonNull
+    private final Price price;
+}
@@ -0,0 +1,17 @@
+package com.example.productorder.product.domain;
+
+
+import lombok.*;
+
+
+/**
+ * Published after a product was saved, e.g. when a new price was added to it.
+ */
+@ToString
+@Getter
+@AllArgsConstructor
+public class ProductSavedEvent {
+
+    @NonNull
+    private final Product product;
+}
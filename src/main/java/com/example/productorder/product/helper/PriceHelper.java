@@ -3,6 +3,7 @@ package com.example.productorder.product.helper;
 import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.domain.PriceUpdateInfo;
 
+import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.NavigableSet;
 import java.util.Set;
@@ -10,8 +11,13 @@ import java.util.TreeSet;
 
 public class PriceHelper {
 
+    public static final Comparator<Price> FROM_DATE_COMPARATOR = (p1, p2) -> (p1.getFromDate().compareTo(p2.getFromDate()));
+
+    public static final int MINOR_UNITS_SCALE = 2;
+    public static final long NOT_IN_MINOR_UNITS = Long.MIN_VALUE;
+
     public static NavigableSet<Price> convertToNavigableSet(Set<Price> priceSet) {
-        return convertToNavigableSet(priceSet, ((p1, p2) -> (p1.getFromDate().compareTo(p2.getFromDate()))));
+        return convertToNavigableSet(priceSet, FROM_DATE_COMPARATOR);
     }
 
     private static NavigableSet<Price> convertToNavigableSet(Set<Price> set, Comparator<Price> comparator) {
@@ -23,6 +29,18 @@ public class PriceHelper {
         return navigableSet;
     }
 
+    public static long convertToMinorUnits(BigDecimal price) {
+        if (price == null) {
+            return NOT_IN_MINOR_UNITS;
+        }
+        try {
+            //throws when price would have to be rounded or does not fit in a long
+            return price.setScale(MINOR_UNITS_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return NOT_IN_MINOR_UNITS;
+        }
+    }
+
     public static Price convertToPrice(PriceUpdateInfo priceUpdateInfo) {
         return Price.builder().price(priceUpdateInfo.getPrice().getPrice()).fromDate(priceUpdateInfo.getPrice().getFromDate()).build();
     }
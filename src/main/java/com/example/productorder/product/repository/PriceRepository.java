@@ -1,7 +1,23 @@
 package com.example.productorder.product.repository;
 
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.ProductPrice;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface PriceRepository extends CrudRepository<Price, Integer> {
+
+    @Query("select pr from PRODUCTS p join p.prices pr where p.name = :productName and pr.fromDate <= :at order by pr.fromDate desc, pr.id")
+    List<Price> findPricesOfProductNotAfter(@Param("productName") String productName, @Param("at") LocalDateTime at, Pageable pageable);
+
+    @Query("select new com.example.productorder.product.domain.ProductPrice(p.name, pr) from PRODUCTS p join p.prices pr"
+            + " where p.name in :productNames and pr.fromDate = (select max(lpr.fromDate) from PRODUCTS lp join lp.prices lpr where lp = p and lpr.fromDate <= :at)"
+            + " order by pr.id")
+    List<ProductPrice> findPricesOfProductsAt(@Param("productNames") Collection<String> productNames, @Param("at") LocalDateTime at);
 }
@@ -1,19 +1,35 @@
 package com.example.productorder.product.repository;
 
 import com.example.productorder.product.domain.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 public interface ProductRepository extends CrudRepository<Product, Integer> {
 
+    @EntityGraph(attributePaths = {"prices", "currentPrice"})
     List<Product> findAll();
 
+    @EntityGraph(attributePaths = {"prices", "currentPrice"})
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"), @QueryHint(name = "org.hibernate.cacheRegion", value = "product-queries")})
     Optional<Product> findProductByName(String name);
 
     Optional<Product> findProductById(Long id);
 
-    Long  countProductsByNameIsIn(Set<String> productsNames);
+    @EntityGraph(attributePaths = "currentPrice")
+    Optional<Product> findWithCurrentPriceByName(String name);
+
+    @EntityGraph(attributePaths = {"prices", "currentPrice"})
+    Set<Product> findByNameIn(Collection<String> productsNames);
+
+    @Query("select p.name from PRODUCTS p where p.firstPriceDate is null and p.prices is not empty")
+    List<String> findNamesWithoutPriceSummary(Pageable pageable);
 }
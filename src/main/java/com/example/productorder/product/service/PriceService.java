@@ -1,12 +1,19 @@
 package com.example.productorder.product.service;
 
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceOnDateInfo;
 import com.example.productorder.product.domain.PriceUpdateInfo;
+import com.example.productorder.product.domain.ProductPrice;
 import com.example.productorder.product.helper.PriceHelper;
 import com.example.productorder.product.repository.PriceRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
 @Service
 public class PriceService {
 
@@ -21,5 +28,27 @@ public class PriceService {
         return priceRepository.save(PriceHelper.convertToPrice(priceUpdateInfo));
     }
 
+    public Optional<Price> getPriceOfProductAt(String productName, LocalDateTime at) {
+        //only the newest price not after the date is loaded, not whole price history
+        return priceRepository.findPricesOfProductNotAfter(productName, at, PageRequest.of(0, 1))
+                              .stream()
+                              .findFirst();
+    }
+
+    public List<PriceOnDateInfo> getPricesOfProductsAt(List<PriceOnDateInfo> pricesOnDate) {
+        //one query for every distinct date, usually all prices are asked for the same date
+        Map<LocalDateTime, Map<String, Price>> pricesByDate = new HashMap<>();
+        pricesOnDate.stream()
+                    .collect(Collectors.groupingBy(PriceOnDateInfo::getAt, Collectors.mapping(PriceOnDateInfo::getProductName, Collectors.toSet())))
+                    .forEach((at, productNames) -> pricesByDate.put(at, priceRepository.findPricesOfProductsAt(productNames, at)
+                                                                                        .stream()
+                                                                                        .collect(Collectors.toMap(ProductPrice::getProductName, ProductPrice::getPrice, (first, second) -> first))));
+
+        return pricesOnDate.stream()
+                           .map(priceOnDate -> priceOnDate.toBuilder()
+                                                          .price(pricesByDate.get(priceOnDate.getAt()).get(priceOnDate.getProductName()))
+                                                          .build())
+                           .collect(Collectors.toList());
+    }
 
 }
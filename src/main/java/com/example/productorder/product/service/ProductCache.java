@@ -0,0 +1,76 @@
+package com.example.productorder.product.service;
+
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.domain.ProductSavedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+public class ProductCache implements MeterBinder {
+
+    private final Cache<String, Product> cache;
+
+    public ProductCache(@Value("${product.cache.maximum-size:1000}") long maximumSize,
+                        @Value("${product.cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        this.cache = Caffeine.newBuilder()
+                             .maximumSize(maximumSize)
+                             .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                             .recordStats()
+                             .build();
+    }
+
+    public Optional<Product> get(String name, Function<String, Optional<Product>> loader) {
+        //missing products are not cached so a product created right after a miss is visible at once
+        return Optional.ofNullable(cache.get(name, key -> loader.apply(key).orElse(null)));
+    }
+
+    public Map<String, Product> getAll(Set<String> names, Function<Set<String>, Collection<Product>> loader) {
+        Map<String, Product> products = new HashMap<>(cache.getAllPresent(names));
+        if (products.size() < names.size()) {
+            Set<String> missingNames = names.stream()
+                                            .filter(name -> !products.containsKey(name))
+                                            .collect(Collectors.toSet());
+            Map<String, Product> loadedProducts = loader.apply(missingNames)
+                                                        .stream()
+                                                        .collect(Collectors.toMap(Product::getName, Function.identity()));
+            cache.putAll(loadedProducts);
+            products.putAll(loadedProducts);
+        }
+        return products;
+    }
+
+    public void invalidate(String name) {
+        cache.invalidate(name);
+    }
+
+    //dropped after commit, a product loaded while the transaction runs would be cached without its change otherwise
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        cache.invalidate(event.getProduct().getName());
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "products");
+    }
+}
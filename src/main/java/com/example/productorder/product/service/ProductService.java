@@ -1,15 +1,22 @@
 package com.example.productorder.product.service;
 
+import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.domain.ProductInfo;
-import com.example.productorder.product.helper.PriceHelper;
+import com.example.productorder.product.domain.ProductSavedEvent;
 import com.example.productorder.product.helper.ProductHelper;
+import com.example.productorder.product.repository.PriceRepository;
 import com.example.productorder.product.repository.ProductRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -17,10 +24,16 @@ import java.util.Set;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final PriceRepository priceRepository;
+    private final ProductCache productCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, PriceRepository priceRepository, ProductCache productCache, ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
+        this.priceRepository = priceRepository;
+        this.productCache = productCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public Product save(ProductInfo productInfo) {
@@ -28,25 +41,81 @@ public class ProductService {
     }
 
     public Product save(Product product) {
-        return productRepository.save(product);
+        try {
+            Product savedProduct = productRepository.save(product);
+            eventPublisher.publishEvent(new ProductSavedEvent(product));
+            return savedProduct;
+        } finally {
+            productCache.invalidate(product.getName());
+        }
+    }
+
+    /**
+     * Adds the price to the product loaded again in this transaction, not to the cached one which is shared by requests
+     * reading its prices. The cached product is dropped once the price is committed.
+     *
+     * @return product with the added price or empty when the product does not exist
+     */
+    @Transactional
+    public Optional<Product> addPrice(String productName, Price price) {
+        Optional<Product> product = productRepository.findProductByName(productName);
+        product.ifPresent(p -> {
+            //saved first, current price of the product references it and is not cascaded
+            p.addPrice(priceRepository.save(price));
+            eventPublisher.publishEvent(new ProductSavedEvent(p));
+        });
+        return product;
+    }
+
+    /**
+     * Sets current price and first price date of products persisted before these columns existed.
+     *
+     * @return number of products updated, zero once all of them have the summary
+     */
+    @Transactional
+    public int backfillPriceSummaries() {
+        List<String> names = productRepository.findNamesWithoutPriceSummary(PageRequest.of(0, 500));
+        if (names.isEmpty()) {
+            return 0;
+        }
+        Set<Product> products = productRepository.findByNameIn(names);
+        products.forEach(product -> {
+            product.summarizePrices();
+            eventPublisher.publishEvent(new ProductSavedEvent(product));
+        });
+        productRepository.saveAll(products);
+        return products.size();
     }
 
     public List<Product> getAllProducts() {
         return productRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<Product> getProductByName(String name) {
-        return productRepository.findProductByName(name);
+        return productCache.get(name, this::loadProductByName);
+    }
+
+    private Optional<Product> loadProductByName(String name) {
+        Optional<Product> product = productRepository.findProductByName(name);
+        //product found in the query cache comes without its prices, they are read from the second level cache before the session closes
+        product.map(Product::getPrices).ifPresent(Hibernate::initialize);
+        return product;
+    }
+
+    public Optional<Product> getProductWithCurrentPriceByName(String name) {
+        //prices are not loaded, only the product row joined with its current price
+        return productRepository.findWithCurrentPriceByName(name);
     }
 
-    public boolean checkIfAllProductsExists(Set<String> productsNames) {
-        //only one product with specific name should exist so we can compare counts
-        return productRepository.countProductsByNameIsIn(productsNames) == productsNames.size();
+    public Map<String, Product> getProductsByNames(Set<String> names) {
+        //products missing from the cache are loaded together with their prices in one query
+        return productCache.getAll(names, productRepository::findByNameIn);
     }
 
     public boolean checkIfAllProductsHavePriceOnDate(Set<Product> productSet, LocalDateTime date) {
         return productSet.stream()
-                         .map(product -> PriceHelper.convertToNavigableSet(product.getPrices()))
-                         .noneMatch(prices -> prices.first().getFromDate().isAfter(date));
+                         .map(Product::getFirstPriceDate)
+                         .noneMatch(firstPriceDate -> firstPriceDate == null || firstPriceDate.isAfter(date));
     }
 }
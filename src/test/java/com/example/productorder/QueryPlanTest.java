@@ -0,0 +1,185 @@
+package com.example.productorder;
+
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.product.repository.PriceRepository;
+import com.example.productorder.product.repository.ProductRepository;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs H2 EXPLAIN on the SQL Hibernate generates for hot repository methods and fails when one of them falls back to a table scan.
+ * <p>
+ * The SQL is captured by {@link CapturedStatements} while the repository method runs against the empty database,
+ * so a changed mapping, entity graph or query shows up in the plan.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.productorder.QueryPlanTest$CapturedStatements")
+public class QueryPlanTest {
+
+    private static final String TABLE_SCAN = "tableScan";
+    private static final LocalDateTime FROM = LocalDateTime.of(2000, 1, 1, 10, 30);
+    private static final LocalDateTime TO = LocalDateTime.of(2010, 1, 1, 10, 30);
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PriceRepository priceRepository;
+
+    @Before
+    public void setUp() {
+        CapturedStatements.clear();
+    }
+
+    @Test
+    public void shouldFindOrderByEmailAndOrderDateWithIndex() {
+        //when
+        orderRepository.findByEmailAndOrderDate("customer1@cp.pc", FROM);
+        String plan = explainCaptured();
+
+        //then
+        assertThat(plan).contains("IDX_ORDERS_EMAIL_ORDER_DATE").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindOrderIdByEmailAndOrderDateWithIndex() {
+        //when
+        orderRepository.findIdByEmailAndOrderDate("customer1@cp.pc", FROM);
+        String plan = explainCaptured();
+
+        //then
+        assertThat(plan).contains("IDX_ORDERS_EMAIL_ORDER_DATE").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindOrdersByEmailsAndOrderDateWithIndex() {
+        //when
+        orderRepository.findByEmailInAndOrderDate(Arrays.asList("customer1@cp.pc", "customer2@cp.pc"), FROM);
+        String plan = explainCaptured();
+
+        //then
+        assertThat(plan).contains("IDX_ORDERS_EMAIL_ORDER_DATE").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindOrdersByOrderDateRangeWithIndex() {
+        //when
+        orderRepository.findByOrderDateBetween(FROM, TO);
+        String betweenPlan = explainCaptured();
+        orderRepository.findByOrderDateGreaterThanEqual(FROM);
+        String fromPlan = explainCaptured();
+        orderRepository.findByOrderDateLessThanEqual(TO);
+        String toPlan = explainCaptured();
+
+        //then
+        assertThat(betweenPlan).contains("IDX_ORDERS_ORDER_DATE_ID").doesNotContain(TABLE_SCAN);
+        assertThat(fromPlan).contains("IDX_ORDERS_ORDER_DATE_ID").doesNotContain(TABLE_SCAN);
+        assertThat(toPlan).contains("IDX_ORDERS_ORDER_DATE_ID").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldSeekOrdersPageAfterCursorWithIndex() {
+        //when
+        orderRepository.findOrderViews(FROM, null, new OrderCursor(FROM, 7L), 100);
+        String plan = explainCaptured();
+
+        //then
+        assertThat(plan).contains("IDX_ORDERS_ORDER_DATE_ID").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindOrdersPageOfCustomerWithIndex() {
+        //when
+        orderRepository.findOrderViewsByEmail("customer1@test.test", new OrderCursor(FROM, 7L), 100);
+        String plan = explainCaptured();
+
+        //then
+        assertThat(plan).contains("IDX_ORDERS_EMAIL_ORDER_DATE").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindProductsWithPricesByNamesWithIndexes() {
+        //when
+        productRepository.findByNameIn(Arrays.asList("Product 1", "Product 2"));
+        String plan = explainCaptured();
+
+        //then primary key of the join table starts with the product id so it serves the join
+        assertThat(plan).contains("NAME IN(?1, ?2)", "PRODUCTS_ID = PRODUCT0_.ID").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void shouldFindPricesOfProductNotAfterWithIndexes() {
+        //when
+        priceRepository.findPricesOfProductNotAfter("Product 1", FROM, PageRequest.of(0, 1));
+        String plan = explainCaptured();
+
+        //then prices are reached from the unique product name through primary keys
+        assertThat(plan).contains("NAME = ?1", "PRODUCTS_ID = PRODUCT0_.ID").doesNotContain(TABLE_SCAN);
+    }
+
+    //runs EXPLAIN on the only statement captured since the previous call, parameters are bound as nulls, H2 picks indexes before binding
+    private String explainCaptured() {
+        List<String> statements = CapturedStatements.clear();
+        assertThat(statements).hasSize(1);
+
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + statements.get(0))) {
+                for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                    statement.setObject(i, null);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getString(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Collects the SQL of executed queries, registered as the Hibernate statement inspector of this test.
+     */
+    public static class CapturedStatements implements StatementInspector {
+
+        private static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            synchronized (STATEMENTS) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+
+        static List<String> clear() {
+            synchronized (STATEMENTS) {
+                List<String> statements = new ArrayList<>(STATEMENTS);
+                STATEMENTS.clear();
+                return statements;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.productorder;
+
+import com.example.productorder.config.SqlStatisticsFilter;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pins number of SQL statements of a request, read from the header returned in the {@code debug} profile.
+ */
+public class SqlStatements {
+
+    public static ResultMatcher atMost(long maxStatements) {
+        return result -> {
+            String statements = result.getResponse().getHeader(SqlStatisticsFilter.STATEMENTS_HEADER);
+            assertThat(statements).as("%s header, is debug profile active?", SqlStatisticsFilter.STATEMENTS_HEADER).isNotNull();
+            assertThat(Long.parseLong(statements)).as("SQL statements of %s %s", result.getRequest().getMethod(), result.getRequest().getRequestURI())
+                                                  .isLessThanOrEqualTo(maxStatements);
+        };
+    }
+}
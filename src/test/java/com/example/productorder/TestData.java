@@ -52,6 +52,7 @@ public class TestData {
                         .email("customer1@cp.pc")
                         .orderDate(orderDate)
                         .orderDetail(orderDetails)
+                        .total(new BigDecimal("22552.50"))
                         .build());
 
         LocalDateTime orderDate1 = LocalDateTime.of(2015, 1, 15, 0, 30);
@@ -62,6 +63,7 @@ public class TestData {
                         .email("customer2@cp.pc")
                         .orderDate(orderDate1)
                         .orderDetail(orderDetails1)
+                        .total(new BigDecimal("10005.50"))
                         .build());
         return orders;
     }
@@ -0,0 +1,51 @@
+package com.example.productorder.config;
+
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.repository.ProductRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//rows have to be committed, sequences are aligned on a connection of their own
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(IdSequenceAlignment.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class IdSequenceAlignmentTest {
+
+    @Autowired
+    private IdSequenceAlignment idSequenceAlignment;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    public void shouldGenerateIdsAfterIdsAlreadyInTable() {
+        //given product persisted with id from the shared hibernate_sequence
+        jdbcTemplate.update("insert into PRODUCTS (id, name) values (1000, 'Product 1')");
+
+        //when
+        idSequenceAlignment.alignSequences();
+        Product product = productRepository.save(Product.builder().name("Product 2").build());
+
+        //then
+        assertThat(product.getId()).isEqualTo(1001L);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.productorder.config;
+
+import com.example.productorder.product.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class RepositoryMetricsAspectTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldTimeRepositoryCallsPerRepositoryAndMethod() {
+        //given
+        long callsBefore = timedCalls("findProductByName");
+
+        //when
+        productRepository.findProductByName("notExistingProduct");
+        productRepository.findProductByName("notExistingProduct");
+
+        //then
+        assertThat(timedCalls("findProductByName") - callsBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldTimeInheritedRepositoryMethods() {
+        //given
+        long callsBefore = timedCalls("count");
+
+        //when
+        productRepository.count();
+
+        //then
+        assertThat(timedCalls("count") - callsBefore).isEqualTo(1);
+    }
+
+    private long timedCalls(String method) {
+        return Optional.ofNullable(meterRegistry.find(RepositoryMetricsAspect.REPOSITORY_TIMER)
+                                                .tag("repository", "ProductRepository")
+                                                .tag("method", method)
+                                                .timer())
+                       .map(Timer::count)
+                       .orElse(0L);
+    }
+}
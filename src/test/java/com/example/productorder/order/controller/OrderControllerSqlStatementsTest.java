@@ -0,0 +1,186 @@
+package com.example.productorder.order.controller;
+
+import com.example.productorder.SqlStatements;
+import com.example.productorder.order.domain.NewOrderDetailInfo;
+import com.example.productorder.order.domain.NewOrderInfo;
+import com.example.productorder.order.repository.CustomerOrderTotalRepository;
+import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.order.service.CustomerOrdersCache;
+import com.example.productorder.order.service.OrderService;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.repository.ProductRepository;
+import com.example.productorder.product.service.ProductCache;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//pins how many SQL statements order endpoints may issue, more of them usually means N+1 queries
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("debug")
+public class OrderControllerSqlStatementsTest {
+
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 10, 30);
+    private static final LocalDateTime FIRST_ORDER_DATE = LocalDateTime.of(2010, 1, 15, 0, 30);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerOrderTotalRepository customerOrderTotalRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerOrdersCache customerOrdersCache;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Before
+    public void setUp() {
+        for (int i = 1; i <= 3; i++) {
+            Product product = Product.builder().name("Product " + i).prices(new HashSet<>()).build();
+            for (int year = 0; year < 5; year++) {
+                product.addPrice(Price.builder().price(BigDecimal.valueOf(year + i)).fromDate(FIRST_PRICE_DATE.plusYears(year)).build());
+            }
+            productService.save(product);
+        }
+        //every order has all three products, N+1 queries would grow with orders and their lines
+        for (int i = 0; i < 10; i++) {
+            orderService.save(orderService.createNewOrder(newOrderInfo("customer" + i + "@cp.pc"), FIRST_ORDER_DATE.plusDays(i)));
+        }
+        entityManagerFactory.getCache().evictAll();
+        productCache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        orderRepository.deleteAll();
+        customerOrderTotalRepository.deleteAll();
+        productRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+        productCache.invalidateAll();
+        customerOrdersCache.invalidateAll();
+    }
+
+    @Test
+    public void shouldGetAllOrdersInFewStatements() throws Exception {
+        mvc.perform(get("/orders"))
+           .andExpect(status().isOk())
+           //orders, their lines and ordered products with prices missing from the product cache
+           .andExpect(SqlStatements.atMost(3));
+    }
+
+    @Test
+    public void shouldExportOrdersInFewStatements() throws Exception {
+        MvcResult export = mvc.perform(get("/orders/export"))
+                              .andExpect(request().asyncStarted())
+                              .andReturn();
+        //written on an async thread, one page of orders, their lines and ordered products with prices
+        mvc.perform(asyncDispatch(export))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(3));
+    }
+
+    @Test
+    public void shouldGetOrdersPageInFewStatements() throws Exception {
+        mvc.perform(get("/orders").param("limit", "5"))
+           .andExpect(status().isOk())
+           //orders, their lines and ordered products with prices missing from the product cache
+           .andExpect(SqlStatements.atMost(3));
+    }
+
+    @Test
+    public void shouldGetOrdersInDateRangeInFewStatements() throws Exception {
+        mvc.perform(get("/orders").param("fromDate", "2010-01-01T00:00:00").param("toDate", "2011-01-01T00:00:00"))
+           .andExpect(status().isOk())
+           //orders, their lines and ordered products with prices missing from the product cache
+           .andExpect(SqlStatements.atMost(3));
+    }
+
+    @Test
+    public void shouldCreateOrderInFewStatements() throws Exception {
+        mvc.perform(post("/orders").contentType(MediaType.APPLICATION_JSON)
+                                   .content(objectMapper.writeValueAsString(newOrderInfo("customer@cp.pc"))))
+           .andExpect(status().isCreated())
+           //first order of the customer inserts zero totals after their update found nothing and updates them again,
+           //pooled sequences of the order and of its lines may need one more read each
+           .andExpect(SqlStatements.atMost(12));
+    }
+
+    @Test
+    public void shouldGetOrderPlacedOnOtherDateInFewStatements() throws Exception {
+        mvc.perform(get("/orders/customer1@cp.pc/2010-01-16T00:30:00/placed/2003-06-01T00:00:00"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(2));
+    }
+
+    @Test
+    public void shouldGetOrderSumTimelineInFewStatements() throws Exception {
+        mvc.perform(get("/orders/customer1@cp.pc/2010-01-16T00:30:00/timeline"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(1));
+    }
+
+    @Test
+    public void shouldGetCustomerOrdersInFewStatementsAndFromCacheWithoutAny() throws Exception {
+        //customer totals, page of orders, their lines and ordered products with prices
+        mvc.perform(get("/customers/customer1@cp.pc/orders"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(4));
+        mvc.perform(get("/customers/customer1@cp.pc/orders"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(0));
+    }
+
+    private static NewOrderInfo newOrderInfo(String email) {
+        return NewOrderInfo.builder()
+                           .email(email)
+                           .productsToOrder(Arrays.asList(NewOrderDetailInfo.builder().productName("Product 1").quantity(1L).build(),
+                                                          NewOrderDetailInfo.builder().productName("Product 2").quantity(2L).build(),
+                                                          NewOrderDetailInfo.builder().productName("Product 3").quantity(3L).build()))
+                           .build();
+    }
+}
@@ -1,46 +1,75 @@
 package com.example.productorder.order.controller;
 
+import com.example.productorder.config.ApiMetrics;
+import com.example.productorder.order.domain.CustomerOrdersInfo;
 import com.example.productorder.order.domain.NewOrderDetailInfo;
 import com.example.productorder.order.domain.NewOrderInfo;
 import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderBatchResult;
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.order.domain.OrderPage;
+import com.example.productorder.order.domain.OrderIngestionInfo;
+import com.example.productorder.order.domain.OrderPricingPlan;
+import com.example.productorder.order.domain.RepricingJobInfo;
+import com.example.productorder.order.domain.RepricingRequest;
+import com.example.productorder.order.domain.OrderSumChange;
+import com.example.productorder.order.helper.OrderHelper;
+import com.example.productorder.order.service.OrderIngestionService;
+import com.example.productorder.order.service.OrderRepricingService;
 import com.example.productorder.order.service.OrderService;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.service.PriceService;
 import com.example.productorder.product.service.ProductService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.util.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.example.productorder.TestData.prepareOrders;
 import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(OrderController.class)
+@Import({OrderIdempotencyCache.class, ApiMetrics.class, SimpleMeterRegistry.class})
 public class OrderControllerTest {
 
     @MockBean
@@ -52,9 +81,18 @@ public class OrderControllerTest {
     @MockBean
     private PriceService priceService;
 
+    @MockBean
+    private OrderRepricingService orderRepricingService;
+
+    @MockBean
+    private OrderIngestionService orderIngestionService;
+
     @Autowired
     OrderController orderController;
 
+    @Autowired
+    private OrderIdempotencyCache orderIdempotencyCache;
+
     @Autowired
     private MockMvc mvc;
 
@@ -63,10 +101,21 @@ public class OrderControllerTest {
 
     private List<Order> testOrders;
 
+    private List<OrderInfo> testOrderInfos;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
     @Before
     public void setUp() {
         List<Product> testProducts = prepareProducts();
         testOrders = prepareOrders(testProducts);
+        testOrderInfos = testOrders.stream()
+                                   .map(OrderHelper::convertToOrderInfo)
+                                   .collect(Collectors.toList());
+        //one registry for the whole context, counters of earlier tests are dropped
+        meterRegistry.getMeters().forEach(meterRegistry::remove);
+        orderIdempotencyCache.invalidateAll();
     }
 
     @Test
@@ -74,17 +123,18 @@ public class OrderControllerTest {
 
         //given
         LocalDateTime from = LocalDateTime.of(2000, 1, 15, 0, 30);
-        given(orderService.getOrders(from, null)).willReturn(testOrders);
+        given(orderService.getOrderInfos(from, null)).willReturn(testOrderInfos);
 
         // then
         mvc.perform(get("/orders")
                 .param("fromDate", "2000-01-15T00:30:00"))
            .andExpect(status().isOk())
            .andExpect(jsonPath("$[0].email", is(testOrders.get(0).getEmail())))
+           .andExpect(jsonPath("$[0].orderDetail[0].product.prices").isNotEmpty())
            .andExpect(jsonPath("$[1].email", is(testOrders.get(1).getEmail())));
 
 
-        verify(orderService, times(1)).getOrders(from, null);
+        verify(orderService, times(1)).getOrderInfos(from, null);
         verifyNoMoreInteractions(productService);
     }
 
@@ -93,7 +143,7 @@ public class OrderControllerTest {
 
         //given
         LocalDateTime to = LocalDateTime.of(2015, 1, 15, 0, 30);
-        given(orderService.getOrders(null, to)).willReturn(testOrders);
+        given(orderService.getOrderInfos(null, to)).willReturn(testOrderInfos);
 
         // then
         mvc.perform(get("/orders")
@@ -103,7 +153,7 @@ public class OrderControllerTest {
            .andExpect(jsonPath("$[1].email", is(testOrders.get(1).getEmail())));
 
 
-        verify(orderService, times(1)).getOrders(null, to);
+        verify(orderService, times(1)).getOrderInfos(null, to);
         verifyNoMoreInteractions(productService);
     }
 
@@ -113,7 +163,7 @@ public class OrderControllerTest {
         //given
         LocalDateTime from = LocalDateTime.of(2000, 1, 15, 0, 30);
         LocalDateTime to = LocalDateTime.of(2015, 1, 15, 0, 30);
-        given(orderService.getOrders(from, to)).willReturn(testOrders);
+        given(orderService.getOrderInfos(from, to)).willReturn(testOrderInfos);
 
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
         params.addAll("fromDate", Lists.newArrayList("2000-01-15T00:30:00"));
@@ -124,10 +174,140 @@ public class OrderControllerTest {
                 .params(params))
            .andExpect(status().isOk())
            .andExpect(jsonPath("$[0].email", is(testOrders.get(0).getEmail())))
+           .andExpect(jsonPath("$[1].email", is(testOrders.get(1).getEmail())))
+           .andExpect(jsonPath("$[0].orderSum", is(testOrders.get(0).getTotal().doubleValue())));
+
+
+        verify(orderService, times(1)).getOrderInfos(from, to);
+        verify(orderService, times(0)).countOrderTotal(any());
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    public void shouldReturnOrdersPageWithContinuationToken() throws Exception {
+
+        //given
+        OrderCursor after = new OrderCursor(LocalDateTime.of(2000, 1, 15, 0, 30), 7L);
+        OrderCursor next = new OrderCursor(LocalDateTime.of(2010, 1, 15, 0, 30), 12L);
+        given(orderService.getOrdersPage(null, null, after, 2)).willReturn(new OrderPage(testOrderInfos, next));
+
+        // then
+        mvc.perform(get("/orders")
+                .param("limit", "2")
+                .param("continuationToken", OrderHelper.convertToContinuationToken(after)))
+           .andExpect(status().isOk())
+           .andExpect(header().string(OrderController.CONTINUATION_TOKEN_HEADER, OrderHelper.convertToContinuationToken(next)))
+           .andExpect(jsonPath("$[0].email", is(testOrders.get(0).getEmail())))
            .andExpect(jsonPath("$[1].email", is(testOrders.get(1).getEmail())));
 
+        verify(orderService, times(1)).getOrdersPage(null, null, after, 2);
+        verify(orderService, times(0)).getOrderInfos(any(), any());
+    }
+
+    @Test
+    public void shouldReturnBadRequestForInvalidContinuationToken() throws Exception {
+
+        // then
+        mvc.perform(get("/orders")
+                .param("continuationToken", "not-a-token"))
+           .andExpect(status().isBadRequest());
+
+        mvc.perform(get("/orders")
+                .param("limit", "0"))
+           .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(orderService);
+    }
+
+    @Test
+    public void shouldReturnCachedFirstPageOfCustomerOrders() throws Exception {
+
+        //given
+        OrderCursor next = new OrderCursor(LocalDateTime.of(2010, 1, 15, 0, 30), 12L);
+        given(orderService.getCachedCustomerOrders("customer1@cp.pc", 100))
+                .willReturn(Optional.of(new CustomerOrdersInfo("customer1@cp.pc", 5L, BigDecimal.TEN, testOrderInfos, next)));
+
+        // then
+        mvc.perform(get("/customers/customer1@cp.pc/orders"))
+           .andExpect(status().isOk())
+           .andExpect(header().string(OrderController.CONTINUATION_TOKEN_HEADER, OrderHelper.convertToContinuationToken(next)))
+           .andExpect(jsonPath("$.orderCount", is(5)))
+           .andExpect(jsonPath("$.total", is(10)))
+           .andExpect(jsonPath("$.orders[0].email", is(testOrders.get(0).getEmail())))
+           .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(orderService, times(0)).getCustomerOrders(any(), any(), anyInt());
+    }
+
+    @Test
+    public void shouldReturnNextPageOfCustomerOrdersWithoutCache() throws Exception {
+
+        //given
+        OrderCursor after = new OrderCursor(LocalDateTime.of(2000, 1, 15, 0, 30), 7L);
+        given(orderService.getCustomerOrders("customer1@cp.pc", after, 2))
+                .willReturn(Optional.of(new CustomerOrdersInfo("customer1@cp.pc", 5L, BigDecimal.TEN, testOrderInfos, null)));
+
+        // then
+        mvc.perform(get("/customers/customer1@cp.pc/orders")
+                .param("limit", "2")
+                .param("continuationToken", OrderHelper.convertToContinuationToken(after)))
+           .andExpect(status().isOk())
+           .andExpect(header().doesNotExist(OrderController.CONTINUATION_TOKEN_HEADER))
+           .andExpect(jsonPath("$.orders[1].email", is(testOrders.get(1).getEmail())));
+
+        verify(orderService, times(0)).getCachedCustomerOrders(any(), anyInt());
+    }
+
+    @Test
+    public void shouldReturnNotFoundForUnknownCustomerAndBadRequestForInvalidPage() throws Exception {
+
+        //given
+        given(orderService.getCachedCustomerOrders("unknown@cp.pc", 100)).willReturn(Optional.empty());
 
-        verify(orderService, times(1)).getOrders(from, to);
+        // then
+        mvc.perform(get("/customers/unknown@cp.pc/orders"))
+           .andExpect(status().isNotFound());
+
+        mvc.perform(get("/customers/customer1@cp.pc/orders")
+                .param("continuationToken", "not-a-token"))
+           .andExpect(status().isBadRequest());
+
+        mvc.perform(get("/customers/customer1@cp.pc/orders")
+                .param("limit", "0"))
+           .andExpect(status().isBadRequest());
+
+        verify(orderService, times(1)).getCachedCustomerOrders("unknown@cp.pc", 100);
+        verifyNoMoreInteractions(orderService);
+    }
+
+    @Test
+    public void shouldExportOrdersAsJsonLines() throws Exception {
+
+        //given
+        LocalDateTime from = LocalDateTime.of(2000, 1, 15, 0, 30);
+        doAnswer(invocation -> {
+            Consumer<OrderInfo> orderConsumer = invocation.getArgument(2);
+            testOrders.stream()
+                      .map(OrderHelper::convertToOrderInfo)
+                      .forEach(orderConsumer);
+            return null;
+        }).when(orderService).exportOrders(eq(from), isNull(), any());
+
+        // then
+        MvcResult mvcResult = mvc.perform(get("/orders/export")
+                .param("fromDate", "2000-01-15T00:30:00"))
+                                 .andExpect(request().asyncStarted())
+                                 .andReturn();
+
+        String[] lines = mvc.perform(asyncDispatch(mvcResult))
+                            .andExpect(status().isOk())
+                            .andReturn()
+                            .getResponse()
+                            .getContentAsString()
+                            .split("\n");
+
+        assertThat(lines).hasSize(testOrders.size());
+        assertThat(objectMapper.readValue(lines[1], OrderInfo.class).getEmail()).isEqualTo(testOrders.get(1).getEmail());
         verifyNoMoreInteractions(productService);
     }
 
@@ -160,19 +340,279 @@ public class OrderControllerTest {
                                                 .email(testOrder.getEmail())
                                                 .productsToOrder(Collections.singletonList(newOrderDetailInfo))
                                                 .build();
-        //noinspection unchecked
-        given(productService.checkIfAllProductsExists(any(Set.class))).willReturn(true);
-        given(orderService.save(any(Order.class))).willReturn(testOrder);
-        given(orderService.createNewOrder(any(NewOrderInfo.class), any(LocalDateTime.class))).willReturn(testOrder);
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.of(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+        // then
+        mvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isCreated());
+
+        verify(orderService, times(1)).prepareOrderPricingPlan(any(NewOrderInfo.class));
+        verify(orderService, times(1)).saveIfNotPlaced(any(Order.class));
+        verify(orderService, times(0)).getOrderByEmailAndDate(any(String.class), any(LocalDateTime.class));
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    public void shouldAcceptOrderForAsynchronousIngestion() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(10L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+        given(orderIngestionService.isAsync()).willReturn(true);
+        given(orderIngestionService.enqueue(testOrder)).willReturn(Optional.of(OrderIngestionInfo.builder()
+                                                                                              .id("ingestion1")
+                                                                                              .status(OrderIngestionInfo.Status.QUEUED)
+                                                                                              .email(testOrder.getEmail())
+                                                                                              .orderDate(testOrder.getOrderDate())
+                                                                                              .build()));
+
+        // then
+        mvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isAccepted())
+           .andExpect(header().string("Location", "http://localhost/orders/ingestions/ingestion1"))
+           .andExpect(jsonPath("$.status", is("QUEUED")));
+
+        verify(orderService, times(0)).saveIfNotPlaced(any(Order.class));
+    }
+
+    @Test
+    public void shouldReturnTooManyRequestsWhenIngestionQueueIsFull() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(10L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+        given(orderIngestionService.isAsync()).willReturn(true);
+        given(orderIngestionService.enqueue(testOrder)).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isTooManyRequests())
+           .andExpect(header().exists("Retry-After"));
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "createOrder", "outcome", "queue_full").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnNotFoundForUnknownIngestion() throws Exception {
+        //given
+        given(orderIngestionService.getIngestion("unknown")).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(get("/orders/ingestions/{id}", "unknown"))
+           .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldReturnFirstResponseForRetryWithSameIdempotencyKey() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(10L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.of(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+
+        // then
+        mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isCreated())
+           .andExpect(header().doesNotExist(OrderController.IDEMPOTENT_REPLAYED_HEADER));
+        mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isCreated())
+           .andExpect(header().string(OrderController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+           .andExpect(jsonPath("$.email", is(testOrder.getEmail())));
+
+        verify(orderService, times(1)).saveIfNotPlaced(any(Order.class));
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "createOrder", "outcome", "idempotent_replay").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnUnprocessableEntityWhenIdempotencyKeyIsUsedForOtherOrder() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(10L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        NewOrderInfo otherNewOrderInfo = NewOrderInfo.builder()
+                                                     .email(testOrder.getEmail())
+                                                     .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                                  .quantity(1L)
+                                                                                                                  .productName("Product 3")
+                                                                                                                  .build()))
+                                                     .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.of(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+
+        // then
+        mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isCreated());
+        mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(otherNewOrderInfo)))
+           .andExpect(status().isUnprocessableEntity());
+
+        verify(orderService, times(1)).saveIfNotPlaced(any(Order.class));
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "createOrder", "outcome", "idempotency_key_reused").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCreateOrdersOfCustomersUsingSameIdempotencyKey() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(10L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        NewOrderInfo otherCustomerNewOrderInfo = NewOrderInfo.builder()
+                                                             .email("other" + testOrder.getEmail())
+                                                             .productsToOrder(newOrderInfo.getProductsToOrder())
+                                                             .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.of(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+
         // then
         mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(newOrderInfo)))
            .andExpect(status().isCreated());
+        mvc.perform(post("/orders")
+                .header(OrderController.IDEMPOTENCY_KEY_HEADER, "key1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(otherCustomerNewOrderInfo)))
+           .andExpect(status().isCreated())
+           .andExpect(header().doesNotExist(OrderController.IDEMPOTENT_REPLAYED_HEADER));
+
+        verify(orderService, times(2)).saveIfNotPlaced(any(Order.class));
+    }
+
+    @Test
+    public void shouldReturnConflictWhenOrderAlreadyExists() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(1L)
+                                                                                                             .productName("Product 1")
+                                                                                                             .build()))
+                                                .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(preparePricingPlan(testOrder));
+        given(orderService.createNewOrder(any(OrderPricingPlan.class), any(LocalDateTime.class))).willReturn(testOrder);
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isConflict());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "createOrder", "outcome", "conflict").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenProductDoesNotExist() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderDetailInfo newOrderDetailInfo = NewOrderDetailInfo.builder().quantity(1L)
+                                                                  .productName("notExistingProduct")
+                                                                  .build();
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(newOrderDetailInfo))
+                                                .build();
+        given(orderService.prepareOrderPricingPlan(any(NewOrderInfo.class))).willReturn(OrderPricingPlan.builder()
+                                                                                                       .email(testOrder.getEmail())
+                                                                                                       .orderDetails(Collections.singletonList(newOrderDetailInfo))
+                                                                                                       .products(Collections.emptyMap())
+                                                                                                       .build());
+        // then
+        mvc.perform(post("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(newOrderInfo)))
+           .andExpect(status().isBadRequest());
+
+        verify(orderService, times(0)).saveIfNotPlaced(any(Order.class));
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    public void shouldCreateOrdersBatch() throws Exception {
+
+        //given
+        Order testOrder = testOrders.get(1);
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(testOrder.getEmail())
+                                                .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                             .quantity(1L)
+                                                                                                             .productName("Product 3")
+                                                                                                             .build()))
+                                                .build();
+        //noinspection unchecked
+        given(orderService.createNewOrders(any(List.class), any(LocalDateTime.class))).willReturn(Arrays.asList(
+                OrderBatchResult.builder().index(0).status(OrderBatchResult.Status.CREATED).build(),
+                OrderBatchResult.builder().index(1).status(OrderBatchResult.Status.CONFLICT).build()));
+        // then
+        mvc.perform(post("/orders/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(Arrays.asList(newOrderInfo, newOrderInfo))))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$[0].status", is("CREATED")))
+           .andExpect(jsonPath("$[1].status", is("CONFLICT")));
 
         //noinspection unchecked
-        verify(productService, times(1)).checkIfAllProductsExists(any(Set.class));
-        verify(orderService, times(1)).save(any(Order.class));
+        verify(orderService, times(1)).createNewOrders(any(List.class), any(LocalDateTime.class));
         verifyNoMoreInteractions(productService);
     }
 
@@ -188,7 +628,7 @@ public class OrderControllerTest {
                                                 .email("incorrectEmail")
                                                 .productsToOrder(Collections.singletonList(newOrderDetailInfo))
                                                 .build();
-        given(orderService.save(any(Order.class))).willReturn(testOrder);
+        given(orderService.saveIfNotPlaced(any(Order.class))).willReturn(Optional.of(testOrder));
         given(orderService.createNewOrder(any(NewOrderInfo.class), any(LocalDateTime.class))).willReturn(testOrder);
         // then
         mvc.perform(post("/orders")
@@ -205,22 +645,211 @@ public class OrderControllerTest {
         //given
         Order testOrder = testOrders.get(1);
         LocalDateTime orderDate = LocalDateTime.of(2015, 1, 15, 0, 30);
+        LocalDateTime date = LocalDateTime.of(2000, 1, 15, 0, 30);
+        given(orderService.getOrderIdByEmailAndDate(testOrder.getEmail(), orderDate)).willReturn(Optional.of(1L));
+        given(orderService.getCachedOrderIfItWasPlacedOnSpecificDate(1L, date)).willReturn(Optional.empty());
         given(orderService.getOrderByEmailAndDate(testOrder.getEmail(), orderDate)).willReturn(Optional.of(testOrder));
         //noinspection unchecked
         given(productService.checkIfAllProductsHavePriceOnDate(any(Set.class),any(LocalDateTime.class))).willReturn(true);
+        given(orderService.getOrderIfItWasPlacedOnSpecificDate(testOrder, date)).willReturn(OrderHelper.convertToOrderInfo(testOrder, BigDecimal.TEN));
 
         // then
         mvc.perform(get("/orders/{email}/{orderDate}/placed/{date}", testOrder.getEmail(), "2015-01-15T00:30:00", "2000-01-15T00:30:00"))
-           .andExpect(status().isOk());
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.orderSum", is(10)));
 
+        verify(orderService, times(1)).getOrderIdByEmailAndDate(testOrder.getEmail(), orderDate);
+        verify(orderService, times(1)).getCachedOrderIfItWasPlacedOnSpecificDate(1L, date);
         verify(orderService, times(1)).getOrderByEmailAndDate(testOrder.getEmail(), orderDate);
         //noinspection unchecked
         verify(productService, times(1)).checkIfAllProductsHavePriceOnDate(any(Set.class),any(LocalDateTime.class));
-        verify(orderService, times(1)).countOrderTotalIfItWasPlacedOnSpecificDate(any(Order.class), any(LocalDateTime.class));
+        verify(orderService, times(1)).getOrderIfItWasPlacedOnSpecificDate(testOrder, date);
+        verifyNoMoreInteractions(orderService);
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    public void getCachedOrderIfItWasPlacedOnSpecificDate() throws Exception {
+        //given
+        Order testOrder = testOrders.get(1);
+        LocalDateTime orderDate = LocalDateTime.of(2015, 1, 15, 0, 30);
+        LocalDateTime date = LocalDateTime.of(2000, 1, 15, 0, 30);
+        given(orderService.getOrderIdByEmailAndDate(testOrder.getEmail(), orderDate)).willReturn(Optional.of(1L));
+        given(orderService.getCachedOrderIfItWasPlacedOnSpecificDate(1L, date)).willReturn(Optional.of(OrderHelper.convertToOrderInfo(testOrder, BigDecimal.TEN)));
+
+        // then
+        mvc.perform(get("/orders/{email}/{orderDate}/placed/{date}", testOrder.getEmail(), "2015-01-15T00:30:00", "2000-01-15T00:30:00"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.orderSum", is(10)));
+
+        verify(orderService, times(1)).getOrderIdByEmailAndDate(testOrder.getEmail(), orderDate);
+        verify(orderService, times(1)).getCachedOrderIfItWasPlacedOnSpecificDate(1L, date);
         verifyNoMoreInteractions(orderService);
         verifyNoMoreInteractions(productService);
     }
 
+    @Test
+    public void shouldReturnNotFoundIfOrderToPlaceOnSpecificDateNotExists() throws Exception {
+        //given
+        given(orderService.getOrderIdByEmailAndDate(any(String.class), any(LocalDateTime.class))).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(get("/orders/{email}/{orderDate}/placed/{date}", "customer1@cp.pc", "2015-01-15T00:30:00", "2000-01-15T00:30:00"))
+           .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getOrderIfItWasPlacedOnSpecificDate", "outcome", "order_not_found").count()).isEqualTo(1);
+        verifyNoMoreInteractions(productService);
+    }
+
+    @Test
+    public void shouldReturnOrderSumTimeline() throws Exception {
+        //given
+        Order testOrder = testOrders.get(1);
+        LocalDateTime orderDate = LocalDateTime.of(2015, 1, 15, 0, 30);
+        LocalDateTime from = LocalDateTime.of(2000, 1, 15, 0, 30);
+        LocalDateTime to = LocalDateTime.of(2010, 1, 15, 0, 30);
+        given(orderService.getOrderByEmailAndDate(testOrder.getEmail(), orderDate)).willReturn(Optional.of(testOrder));
+        given(orderService.getOrderSumTimeline(testOrder, from, to)).willReturn(Arrays.asList(new OrderSumChange(from, BigDecimal.ONE),
+                                                                                             new OrderSumChange(from.plusYears(1), BigDecimal.TEN)));
+
+        // then
+        mvc.perform(get("/orders/{email}/{orderDate}/timeline", testOrder.getEmail(), "2015-01-15T00:30:00")
+                .param("from", "2000-01-15T00:30:00")
+                .param("to", "2010-01-15T00:30:00"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$[0].date", is("2000-01-15T00:30:00")))
+           .andExpect(jsonPath("$[1].orderSum", is(10)));
+
+        verify(orderService, times(1)).getOrderSumTimeline(testOrder, from, to);
+    }
+
+    @Test
+    public void shouldReturnBadRequestForOrderSumTimelineWithToBeforeFrom() throws Exception {
+        // then
+        mvc.perform(get("/orders/{email}/{orderDate}/timeline", "customer1@cp.pc", "2015-01-15T00:30:00")
+                .param("from", "2010-01-15T00:30:00")
+                .param("to", "2000-01-15T00:30:00"))
+           .andExpect(status().isBadRequest());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getOrderSumTimeline", "outcome", "date_range_invalid").count()).isEqualTo(1);
+        verifyNoMoreInteractions(orderService);
+    }
+
+    @Test
+    public void shouldStartRepricing() throws Exception {
+        //given
+        RepricingRequest repricingRequest = new RepricingRequest(LocalDateTime.of(2000, 1, 15, 0, 30), LocalDateTime.of(2010, 1, 15, 0, 30), null);
+        given(orderRepricingService.startRepricing(eq(repricingRequest), any(LocalDateTime.class))).willReturn(RepricingJobInfo.builder()
+                                                                                                                             .id("job1")
+                                                                                                                             .status(RepricingJobInfo.Status.QUEUED)
+                                                                                                                             .date(LocalDateTime.of(2019, 1, 15, 0, 30))
+                                                                                                                             .orderSum(BigDecimal.ZERO)
+                                                                                                                             .repricedOrderSum(BigDecimal.ZERO)
+                                                                                                                             .build());
+
+        // then
+        mvc.perform(post("/orders/repricings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(repricingRequest)))
+           .andExpect(status().isAccepted())
+           .andExpect(header().string("Location", "http://localhost/orders/repricings/job1"))
+           .andExpect(jsonPath("$.status", is("QUEUED")));
+    }
+
+    @Test
+    public void shouldReturnBadRequestForRepricingWithToBeforeFrom() throws Exception {
+        //given
+        RepricingRequest repricingRequest = new RepricingRequest(LocalDateTime.of(2010, 1, 15, 0, 30), LocalDateTime.of(2000, 1, 15, 0, 30), null);
+
+        // then
+        mvc.perform(post("/orders/repricings")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(repricingRequest)))
+           .andExpect(status().isBadRequest());
+
+        verifyNoMoreInteractions(orderRepricingService);
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "startRepricing", "outcome", "date_range_invalid").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnNotFoundForUnknownRepricing() throws Exception {
+        //given
+        given(orderRepricingService.getRepricingJob("unknown")).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(get("/orders/repricings/{id}", "unknown"))
+           .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldStreamRepricedOrdersOfDoneRepricing() throws Exception {
+        //given
+        given(orderRepricingService.getRepricingJob("job1")).willReturn(Optional.of(repricingJobInfo(RepricingJobInfo.Status.DONE)));
+        given(orderRepricingService.openRepricedOrders("job1")).willReturn(Optional.of(new ByteArrayInputStream("{\"email\":\"customer1@cp.pc\"}\n{\"email\":\"customer2@cp.pc\"}\n".getBytes())));
+
+        // then
+        MvcResult mvcResult = mvc.perform(get("/orders/repricings/{id}/orders", "job1"))
+                                 .andExpect(request().asyncStarted())
+                                 .andReturn();
+
+        mvc.perform(asyncDispatch(mvcResult))
+           .andExpect(status().isOk())
+           .andExpect(content().string(containsString("customer2@cp.pc")));
+    }
+
+    @Test
+    public void shouldReturnConflictForRepricedOrdersOfRunningRepricing() throws Exception {
+        //given
+        given(orderRepricingService.getRepricingJob("job1")).willReturn(Optional.of(repricingJobInfo(RepricingJobInfo.Status.RUNNING)));
+
+        // then
+        mvc.perform(get("/orders/repricings/{id}/orders", "job1"))
+           .andExpect(status().isConflict());
+
+        verify(orderRepricingService, times(0)).openRepricedOrders(any());
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getRepricedOrders", "outcome", "repricing_not_done").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnNotFoundForRepricedOrdersOfRepricingExpiredAfterStatusCheck() throws Exception {
+        //given
+        given(orderRepricingService.getRepricingJob("job1")).willReturn(Optional.of(repricingJobInfo(RepricingJobInfo.Status.DONE)));
+        given(orderRepricingService.openRepricedOrders("job1")).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(get("/orders/repricings/{id}/orders", "job1"))
+           .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getRepricedOrders", "outcome", "repricing_not_found").count()).isEqualTo(1);
+    }
+
+    private static RepricingJobInfo repricingJobInfo(RepricingJobInfo.Status status) {
+        return RepricingJobInfo.builder()
+                               .id("job1")
+                               .status(status)
+                               .date(LocalDateTime.of(2019, 1, 15, 0, 30))
+                               .orderSum(BigDecimal.ZERO)
+                               .repricedOrderSum(BigDecimal.ZERO)
+                               .build();
+    }
+
+    private OrderPricingPlan preparePricingPlan(Order order) {
+        return OrderPricingPlan.builder()
+                               .email(order.getEmail())
+                               .orderDetails(order.getOrderDetail()
+                                                  .stream()
+                                                  .map(orderDetail -> NewOrderDetailInfo.builder()
+                                                                                        .productName(orderDetail.getProduct().getName())
+                                                                                        .quantity(orderDetail.getQuantity())
+                                                                                        .build())
+                                                  .collect(Collectors.toList()))
+                               .products(order.getOrderDetail()
+                                              .stream()
+                                              .map(OrderDetail::getProduct)
+                                              .collect(Collectors.toMap(Product::getName, Function.identity(), (p1, p2) -> p1)))
+                               .build();
+    }
+
     private String asJsonString(final Object obj) {
         try {
             return objectMapper.writeValueAsString(obj);
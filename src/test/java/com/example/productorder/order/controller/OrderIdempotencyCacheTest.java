@@ -0,0 +1,56 @@
+package com.example.productorder.order.controller;
+
+import com.example.productorder.order.domain.NewOrderInfo;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OrderIdempotencyCacheTest {
+
+    private final OrderIdempotencyCache orderIdempotencyCache = new OrderIdempotencyCache(100, 60, 50);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldStopWaitingForFirstRequestWithKeyAfterTimeout() throws Exception {
+        //given first request still creating the order
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder().email("customer1@cp.pc").productsToOrder(Collections.emptyList()).build();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> firstRequest = executor.submit(() -> orderIdempotencyCache.execute("key1", newOrderInfo, () -> {
+            started.countDown();
+            await(release);
+            return ResponseEntity.ok().build();
+        }));
+        started.await();
+
+        //then
+        assertThatThrownBy(() -> orderIdempotencyCache.execute("key1", newOrderInfo, () -> ResponseEntity.ok().build())).isInstanceOf(TimeoutException.class);
+        release.countDown();
+        firstRequest.get();
+        assertThat(orderIdempotencyCache.execute("key1", newOrderInfo, () -> ResponseEntity.ok().build())).hasValueSatisfying(response -> assertThat(response.isReplayed()).isTrue());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.productorder.order.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderJournalTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadUnappliedEntriesAfterReopen() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        long first = orderJournal.append(bytes("order 1"));
+        orderJournal.append(bytes("order 2"));
+        orderJournal.append(bytes("order 3"));
+        orderJournal.applied(Collections.singletonList(first));
+        orderJournal.close();
+
+        //when
+        OrderJournal reopenedJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+
+        //then
+        assertThat(payloads(reopenedJournal.readUnapplied())).containsExactly("order 2", "order 3");
+        reopenedJournal.close();
+    }
+
+    @Test
+    public void shouldNotReadEntriesAppendedAfterOpen() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        orderJournal.append(bytes("order 1"));
+        orderJournal.close();
+        OrderJournal reopenedJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+
+        //when
+        reopenedJournal.append(bytes("order 2"));
+
+        //then
+        assertThat(payloads(reopenedJournal.readUnapplied())).containsExactly("order 1");
+        reopenedJournal.close();
+    }
+
+    @Test
+    public void shouldKeepCheckpointBeforeEntryAppliedOutOfOrder() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        orderJournal.append(bytes("order 1"));
+        long second = orderJournal.append(bytes("order 2"));
+        orderJournal.applied(Collections.singletonList(second));
+        orderJournal.close();
+
+        //when
+        OrderJournal reopenedJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+
+        //then
+        assertThat(payloads(reopenedJournal.readUnapplied())).containsExactly("order 1", "order 2");
+        reopenedJournal.close();
+    }
+
+    @Test
+    public void shouldDropTornEntryAndAppendAfterLastValidOne() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        orderJournal.append(bytes("order 1"));
+        long torn = orderJournal.append(bytes("order 2"));
+        orderJournal.close();
+        try (RandomAccessFile segment = new RandomAccessFile(directory.resolve(OrderJournal.segmentFileName(0)).toFile(), "rw")) {
+            segment.seek(OrderJournal.offset(torn) + OrderJournal.HEADER_SIZE);
+            segment.write('X');
+        }
+        assertThat(OrderJournal.inspect(directory).get(0).isTornTail()).isTrue();
+
+        //when
+        OrderJournal reopenedJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        long appended = reopenedJournal.append(bytes("order 3"));
+
+        reopenedJournal.close();
+
+        //then
+        assertThat(appended).isEqualTo(torn);
+        OrderJournal journalAfterAppend = new OrderJournal(directory, SEGMENT_SIZE, true);
+        assertThat(payloads(journalAfterAppend.readUnapplied())).containsExactly("order 1", "order 3");
+        journalAfterAppend.close();
+    }
+
+    @Test
+    public void shouldMoveCheckpointPastDeadLetters() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        long first = orderJournal.append(bytes("order 1"));
+        long second = orderJournal.append(bytes("order 2"));
+
+        //when
+        orderJournal.deadLetter(Collections.singletonList(new OrderJournal.Entry(first, bytes("order 1"))));
+        orderJournal.applied(Collections.singletonList(second));
+        orderJournal.close();
+
+        //then
+        assertThat(payloads(OrderJournal.readDeadLetters(directory))).containsExactly("order 1");
+        OrderJournal reopenedJournal = new OrderJournal(directory, SEGMENT_SIZE, true);
+        assertThat(reopenedJournal.readUnapplied()).isEmpty();
+        reopenedJournal.close();
+    }
+
+    @Test
+    public void shouldRollSegmentsAndDeleteAppliedOnes() throws Exception {
+        //given
+        Path directory = temporaryFolder.getRoot().toPath();
+        OrderJournal orderJournal = new OrderJournal(directory, SEGMENT_SIZE, false);
+        byte[] payload = new byte[400];
+        Arrays.fill(payload, (byte) 'o');
+        long first = orderJournal.append(payload);
+        long second = orderJournal.append(payload);
+        long third = orderJournal.append(payload);
+
+        //then
+        assertThat(OrderJournal.inspect(directory)).extracting(OrderJournal.SegmentInfo::getEntries).containsExactly(2, 1);
+
+        //when
+        orderJournal.applied(Arrays.asList(first, second));
+
+        //then
+        assertThat(OrderJournal.inspect(directory)).extracting(OrderJournal.SegmentInfo::getName).containsExactly(OrderJournal.segmentFileName(1));
+        assertThat(OrderJournal.readCheckpoint(directory)).isEqualTo(third);
+        assertThat(Files.exists(directory.resolve(OrderJournal.segmentFileName(0)))).isFalse();
+        orderJournal.close();
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<OrderJournal.Entry> entries) {
+        return entries.stream()
+                      .map(entry -> new String(entry.getPayload(), StandardCharsets.UTF_8))
+                      .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.productorder.order.repository;
+
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//same batching as in the application
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+public class OrderBatchInsertTest {
+
+    private static final int ORDER_LINES = 1000;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Product product;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        product = entityManager.persist(Product.builder()
+                                               .name("Product 1")
+                                               .prices(Collections.singleton(Price.builder()
+                                                                                  .fromDate(LocalDateTime.of(2000, 1, 1, 10, 30))
+                                                                                  .price(new BigDecimal("10.50"))
+                                                                                  .build()))
+                                               .build());
+        entityManager.flush();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void shouldInsertOrderLinesInBatches() {
+        //given
+        Price price = product.getPrices().iterator().next();
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        for (long quantity = 1; quantity <= ORDER_LINES; quantity++) {
+            orderDetails.add(OrderDetail.builder().product(product).price(price).quantity(quantity).build());
+        }
+        Order order = Order.builder()
+                           .email("customer1@cp.pc")
+                           .orderDate(LocalDateTime.of(2018, 1, 15, 0, 30))
+                           .orderDetail(orderDetails)
+                           .total(BigDecimal.ONE)
+                           .build();
+
+        //when
+        orderRepository.saveAndFlush(order);
+
+        //then
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ORDER_LINES + 1);
+        //sequence calls: pooled optimizer reads a sequence twice on first use, 2 for the order and 3 for 1000 order lines,
+        //batched inserts prepare each statement once: order, order lines and order to order line links
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2 + 3 + 3);
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.productorder.order.repository;
+
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.OrderDetailView;
+import com.example.productorder.order.domain.OrderView;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.Persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class OrderRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private List<Order> orders;
+
+    @Before
+    public void setUp() {
+        orders = new ArrayList<>();
+        LocalDateTime orderDate = LocalDateTime.of(2018, 1, 15, 0, 30);
+        //two orders share every order date so the id has to break the ties
+        for (int i = 0; i < 10; i++) {
+            orders.add(entityManager.persist(Order.builder()
+                                                  .email("customer" + i + "@cp.pc")
+                                                  .orderDate(orderDate.plusDays(i / 2))
+                                                  .orderDetail(Collections.emptySet())
+                                                  .total(BigDecimal.ONE)
+                                                  .build()));
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void shouldRejectSecondOrderOfCustomerWithSameOrderDate() {
+        //given
+        Order duplicate = Order.builder()
+                               .email(orders.get(0).getEmail())
+                               .orderDate(orders.get(0).getOrderDate())
+                               .orderDetail(Collections.emptySet())
+                               .total(BigDecimal.ONE)
+                               .build();
+
+        //then
+        assertThatThrownBy(() -> orderRepository.saveAndFlush(duplicate))
+                .isInstanceOfSatisfying(DataIntegrityViolationException.class,
+                                        e -> assertThat(e.getMostSpecificCause().getMessage()).contains(Order.EMAIL_ORDER_DATE_INDEX));
+    }
+
+    @Test
+    public void shouldPageThroughAllOrdersByOrderDateAndId() {
+        //given
+        List<String> pagedEmails = new ArrayList<>();
+        OrderCursor after = null;
+
+        //when
+        List<OrderView> page;
+        while (!(page = orderRepository.findOrderViews(null, null, after, 3)).isEmpty()) {
+            page.forEach(order -> pagedEmails.add(order.getEmail()));
+            OrderView lastOrder = page.get(page.size() - 1);
+            after = new OrderCursor(lastOrder.getOrderDate(), lastOrder.getId());
+        }
+
+        //then
+        assertThat(pagedEmails).containsExactlyElementsOf(orders.stream()
+                                                                .map(Order::getEmail)
+                                                                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldPageOnlyThroughOrdersBetweenDates() {
+        //given
+        LocalDateTime from = orders.get(2).getOrderDate();
+        LocalDateTime to = orders.get(5).getOrderDate();
+
+        //when
+        List<OrderView> firstPage = orderRepository.findOrderViews(from, to, null, 3);
+        OrderView lastOrder = firstPage.get(2);
+        List<OrderView> secondPage = orderRepository.findOrderViews(from, to, new OrderCursor(lastOrder.getOrderDate(), lastOrder.getId()), 3);
+
+        //then
+        assertThat(firstPage).extracting(OrderView::getEmail).containsExactly("customer2@cp.pc", "customer3@cp.pc", "customer4@cp.pc");
+        assertThat(secondPage).extracting(OrderView::getEmail).containsExactly("customer5@cp.pc");
+    }
+
+    @Test
+    public void shouldPageOnlyThroughOrdersOfCustomer() {
+        //given
+        String email = orders.get(0).getEmail();
+        for (int i = 1; i <= 3; i++) {
+            entityManager.persist(Order.builder()
+                                       .email(email)
+                                       .orderDate(orders.get(0).getOrderDate().plusYears(i))
+                                       .orderDetail(Collections.emptySet())
+                                       .total(BigDecimal.ONE)
+                                       .build());
+        }
+        entityManager.flush();
+
+        //when
+        List<OrderView> firstPage = orderRepository.findOrderViewsByEmail(email, null, 3);
+        OrderView lastOrder = firstPage.get(2);
+        List<OrderView> secondPage = orderRepository.findOrderViewsByEmail(email, new OrderCursor(lastOrder.getOrderDate(), lastOrder.getId()), 3);
+
+        //then
+        assertThat(firstPage).extracting(OrderView::getEmail).containsOnly(email);
+        assertThat(firstPage).extracting(OrderView::getOrderDate).containsExactly(orders.get(0).getOrderDate(),
+                                                                                  orders.get(0).getOrderDate().plusYears(1),
+                                                                                  orders.get(0).getOrderDate().plusYears(2));
+        assertThat(secondPage).extracting(OrderView::getOrderDate).containsExactly(orders.get(0).getOrderDate().plusYears(3));
+    }
+
+    @Test
+    public void shouldLoadOrderDetailViewsOfGivenOrders() {
+        //given
+        Order order = persistOrderWithDetails();
+
+        //when
+        List<OrderDetailView> orderDetails = orderRepository.findOrderDetailViews(Arrays.asList(order.getId(), orders.get(0).getId()));
+
+        //then
+        assertThat(orderDetails).hasSize(1);
+        assertThat(orderDetails.get(0).getOrderId()).isEqualTo(order.getId());
+        assertThat(orderDetails.get(0).getProductName()).isEqualTo("Product 1");
+        assertThat(orderDetails.get(0).getPrice()).isEqualByComparingTo("200.5");
+        assertThat(orderDetails.get(0).getQuantity()).isEqualTo(3L);
+        assertThat(orderRepository.findOrderDetailViews(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void shouldLoadPriceHistoryOfOrderedProductsByEmailAndDate() {
+        //given
+        Order order = persistOrderWithDetails();
+
+        //when
+        Order foundOrder = orderRepository.findByEmailAndOrderDate(order.getEmail(), order.getOrderDate()).get();
+        entityManager.clear();
+
+        //then
+        OrderDetail orderDetail = foundOrder.getOrderDetail().iterator().next();
+        assertThat(Persistence.getPersistenceUtil().isLoaded(orderDetail.getProduct(), "prices")).isTrue();
+        assertThat(orderDetail.getProduct().getPriceTimeline().size()).isEqualTo(2);
+        assertThat(orderDetail.getPrice().getPrice()).isEqualByComparingTo("200.5");
+    }
+
+    @Test
+    public void shouldFindOrderIdByEmailAndDate() {
+        //given
+        Order order = orders.get(3);
+
+        //then
+        assertThat(orderRepository.findIdByEmailAndOrderDate(order.getEmail(), order.getOrderDate())).contains(order.getId());
+        assertThat(orderRepository.findIdByEmailAndOrderDate(order.getEmail(), order.getOrderDate().plusSeconds(1))).isEmpty();
+    }
+
+    private Order persistOrderWithDetails() {
+        Price oldPrice = entityManager.persist(Price.builder().fromDate(LocalDateTime.of(1989, 1, 1, 10, 30)).price(new BigDecimal("200.5")).build());
+        Price newPrice = entityManager.persist(Price.builder().fromDate(LocalDateTime.of(2019, 1, 1, 10, 30)).price(new BigDecimal("100.5")).build());
+        Product product = entityManager.persist(Product.builder()
+                                                       .name("Product 1")
+                                                       .prices(new HashSet<>(Arrays.asList(oldPrice, newPrice)))
+                                                       .build());
+        OrderDetail orderDetail = entityManager.persist(OrderDetail.builder()
+                                                                   .product(product)
+                                                                   .price(oldPrice)
+                                                                   .quantity(3L)
+                                                                   .build());
+        Order order = entityManager.persist(Order.builder()
+                                                 .email("customer@cp.pc")
+                                                 .orderDate(LocalDateTime.of(2000, 1, 1, 10, 30))
+                                                 .orderDetail(Collections.singleton(orderDetail))
+                                                 .total(new BigDecimal("601.50"))
+                                                 .build());
+        entityManager.flush();
+        entityManager.clear();
+        return order;
+    }
+}
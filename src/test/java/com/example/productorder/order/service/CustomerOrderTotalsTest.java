@@ -0,0 +1,158 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.CustomerOrderTotal;
+import com.example.productorder.order.domain.NewOrderDetailInfo;
+import com.example.productorder.order.domain.NewOrderInfo;
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.repository.CustomerOrderTotalRepository;
+import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.repository.ProductRepository;
+import com.example.productorder.product.service.ProductCache;
+import com.example.productorder.product.service.ProductService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class CustomerOrderTotalsTest {
+
+    private static final int CONCURRENT_ORDERS = 8;
+    private static final LocalDateTime FIRST_ORDER_DATE = LocalDateTime.of(2010, 1, 15, 0, 30);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerOrderTotalRepository customerOrderTotalRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        Product product = Product.builder().name("Product 1").prices(new HashSet<>()).build();
+        product.addPrice(Price.builder().price(BigDecimal.TEN).fromDate(LocalDateTime.of(2000, 1, 1, 10, 30)).build());
+        productService.save(product);
+        executor = Executors.newFixedThreadPool(CONCURRENT_ORDERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        orderRepository.deleteAll();
+        customerOrderTotalRepository.deleteAll();
+        productRepository.deleteAll();
+        productCache.invalidateAll();
+    }
+
+    @Test
+    public void shouldCountFirstOrdersOfCustomerPlacedAtTheSameMoment() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            //given
+            String email = "customer" + round + "@cp.pc";
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<Order>>> savedOrders = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_ORDERS; i++) {
+                Order order = orderService.createNewOrder(newOrderInfo(email), FIRST_ORDER_DATE.plusDays(i));
+                savedOrders.add(executor.submit(() -> {
+                    start.await();
+                    return orderService.saveIfNotPlaced(order);
+                }));
+            }
+
+            //when
+            start.countDown();
+
+            //then
+            for (Future<Optional<Order>> savedOrder : savedOrders) {
+                assertThat(savedOrder.get()).isPresent();
+            }
+            assertThat(customerOrderTotalRepository.findById(email)).hasValueSatisfying(totals -> {
+                assertThat(totals.getOrderCount()).isEqualTo(CONCURRENT_ORDERS);
+                assertThat(totals.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(20L * CONCURRENT_ORDERS));
+            });
+        }
+    }
+
+    @Test
+    public void shouldNotSaveOrderAlreadyPlacedByCustomer() {
+        //given
+        orderService.saveIfNotPlaced(orderService.createNewOrder(newOrderInfo("customer@cp.pc"), FIRST_ORDER_DATE));
+
+        //when
+        Optional<Order> duplicateOrder = orderService.saveIfNotPlaced(orderService.createNewOrder(newOrderInfo("customer@cp.pc"), FIRST_ORDER_DATE));
+
+        //then
+        assertThat(duplicateOrder).isEmpty();
+        assertThat(customerOrderTotalRepository.findById("customer@cp.pc")).hasValueSatisfying(totals -> assertThat(totals.getOrderCount()).isEqualTo(1));
+    }
+
+    @Test
+    public void shouldNotReturnCustomerWhoseFirstOrderWasNotSaved() {
+        //given
+        customerOrderTotalRepository.save(new CustomerOrderTotal("customer@cp.pc", 0L, BigDecimal.ZERO));
+
+        //then
+        assertThat(orderService.getCustomerOrders("customer@cp.pc", null, 10)).isEmpty();
+    }
+
+    @Test
+    public void shouldBackfillTotalsOfCustomersWithoutThem() {
+        //given orders persisted before the totals existed
+        orderRepository.save(orderService.createNewOrder(newOrderInfo("customer1@cp.pc"), FIRST_ORDER_DATE));
+        orderRepository.save(orderService.createNewOrder(newOrderInfo("customer1@cp.pc"), FIRST_ORDER_DATE.plusDays(1)));
+        orderRepository.save(orderService.createNewOrder(newOrderInfo("customer2@cp.pc"), FIRST_ORDER_DATE));
+        orderService.saveIfNotPlaced(orderService.createNewOrder(newOrderInfo("customer3@cp.pc"), FIRST_ORDER_DATE));
+
+        //when
+        int backfilledCustomers = orderService.backfillCustomerOrderTotals();
+
+        //then
+        assertThat(backfilledCustomers).isEqualTo(2);
+        assertThat(customerOrderTotalRepository.findById("customer1@cp.pc")).hasValueSatisfying(totals -> {
+            assertThat(totals.getOrderCount()).isEqualTo(2);
+            assertThat(totals.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(40L));
+        });
+        assertThat(customerOrderTotalRepository.findById("customer3@cp.pc")).hasValueSatisfying(totals -> assertThat(totals.getOrderCount()).isEqualTo(1));
+        assertThat(orderService.backfillCustomerOrderTotals()).isZero();
+    }
+
+    private static NewOrderInfo newOrderInfo(String email) {
+        return NewOrderInfo.builder()
+                           .email(email)
+                           .productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder().productName("Product 1").quantity(2L).build()))
+                           .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.CustomerOrdersInfo;
+import com.example.productorder.order.domain.OrdersPlacedEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CustomerOrdersCacheTest {
+
+    private CustomerOrdersCache customerOrdersCache;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        customerOrdersCache = new CustomerOrdersCache(100, 600);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void shouldDropOnlyCustomersWithPlacedOrders() {
+        //given
+        get("customer1@cp.pc");
+        get("customer2@cp.pc");
+
+        //when
+        customerOrdersCache.onOrdersPlaced(new OrdersPlacedEvent(Collections.singleton("customer1@cp.pc")));
+        get("customer1@cp.pc");
+        get("customer2@cp.pc");
+
+        //then
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    public void shouldNotCacheUnknownCustomers() {
+        //when
+        Optional<CustomerOrdersInfo> first = customerOrdersCache.get("unknown@cp.pc", email -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        Optional<CustomerOrdersInfo> second = customerOrdersCache.get("unknown@cp.pc", email -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        //then
+        assertThat(first).isEmpty();
+        assertThat(second).isEmpty();
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<CustomerOrdersInfo> get(String email) {
+        return customerOrdersCache.get(email, key -> {
+            loads.incrementAndGet();
+            return Optional.of(CustomerOrdersInfo.builder().email(key).orderCount(1).total(BigDecimal.TEN).orders(Collections.emptyList()).build());
+        });
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.JournaledOrder;
+import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.order.domain.OrderIngestionInfo;
+import com.example.productorder.order.journal.OrderJournal;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.productorder.TestData.prepareOrders;
+import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OrderIngestionServiceTest {
+
+    private OrderService orderService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OrderIngestionService orderIngestionService;
+
+    private List<Order> testOrders;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        orderService = mock(OrderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        orderIngestionService = new OrderIngestionService(orderService, null, null, Optional.empty(), meterRegistry, true, 2, 10, 10, 1, 1, 100, 600);
+        testOrders = prepareOrders(prepareProducts());
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        orderIngestionService.shutdown();
+    }
+
+    @Test
+    public void shouldSaveQueuedOrdersInOneBatch() throws Exception {
+        //given
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+        String firstId = orderIngestionService.enqueue(testOrders.get(0)).get().getId();
+        String secondId = orderIngestionService.enqueue(testOrders.get(1)).get().getId();
+
+        //when
+        orderIngestionService.start();
+
+        //then
+        assertThat(waitUntilSaved(firstId).getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        assertThat(waitUntilSaved(secondId).getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        assertThat(waitUntilSaved(secondId).getOrder().getEmail()).isEqualTo(testOrders.get(1).getEmail());
+        //noinspection unchecked
+        verify(orderService, times(1)).saveAll(anyList());
+        assertThat(meterRegistry.get(OrderIngestionService.FLUSH_TIMER).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSaveOrdersOneByOneWhenBatchContainsPlacedOrder() throws Exception {
+        //given
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willThrow(new DataIntegrityViolationException("duplicate"));
+        given(orderService.saveIfNotPlaced(any(Order.class))).willAnswer(invocation -> testOrders.get(0).getEmail().equals(invocation.<Order>getArgument(0).getEmail())
+                ? Optional.empty()
+                : Optional.of(invocation.getArgument(0)));
+        String placedId = orderIngestionService.enqueue(testOrders.get(0)).get().getId();
+        String newId = orderIngestionService.enqueue(testOrders.get(1)).get().getId();
+
+        //when
+        orderIngestionService.start();
+
+        //then
+        assertThat(waitUntilSaved(placedId).getStatus()).isEqualTo(OrderIngestionInfo.Status.CONFLICT);
+        assertThat(waitUntilSaved(newId).getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+    }
+
+    @Test
+    public void shouldRejectOrderWhenQueueIsFull() {
+        //given
+        orderIngestionService.enqueue(testOrders.get(0));
+        orderIngestionService.enqueue(testOrders.get(1));
+
+        //then
+        assertThat(orderIngestionService.enqueue(testOrders.get(0))).isEmpty();
+        assertThat(meterRegistry.get(OrderIngestionService.QUEUE_SIZE_GAUGE).gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldDrainQueueOnShutdown() throws Exception {
+        //given
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+        String firstId = orderIngestionService.enqueue(testOrders.get(0)).get().getId();
+        String secondId = orderIngestionService.enqueue(testOrders.get(1)).get().getId();
+        orderIngestionService.start();
+
+        //when
+        orderIngestionService.shutdown();
+
+        //then
+        assertThat(orderIngestionService.getIngestion(firstId).get().getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        assertThat(orderIngestionService.getIngestion(secondId).get().getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        assertThat(orderIngestionService.enqueue(testOrders.get(0))).isEmpty();
+    }
+
+    @Test
+    public void shouldSaveJournaledOrdersWhichWereNotSavedBeforeRestart() throws Exception {
+        //given
+        Order order = prepareJournaledOrder(prepareJournaledProduct(1L, 11L));
+        //in-memory database is created again on restart, the same product and price get new ids
+        Product recreatedProduct = prepareJournaledProduct(2L, 22L);
+        ProductService productService = mock(ProductService.class);
+        given(productService.getProductsByNames(Collections.singleton("Product 1"))).willReturn(Collections.singletonMap("Product 1", recreatedProduct));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path journalDirectory = temporaryFolder.getRoot().toPath();
+
+        OrderJournal orderJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        OrderIngestionService stoppedIngestion = new OrderIngestionService(orderService, productService, objectMapper, Optional.of(orderJournal), meterRegistry, true, 2, 10, 10, 1, 1, 100, 600);
+        String id = stoppedIngestion.enqueue(order).get().getId();
+        orderJournal.close();
+
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+        OrderJournal reopenedJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        OrderIngestionService restartedIngestion = new OrderIngestionService(orderService, productService, objectMapper, Optional.of(reopenedJournal), new SimpleMeterRegistry(), true, 2, 10, 10, 1, 1, 100, 600);
+
+        //when
+        restartedIngestion.start();
+        restartedIngestion.shutdown();
+
+        //then
+        ArgumentCaptor<List<Order>> savedOrders = ArgumentCaptor.forClass(List.class);
+        verify(orderService).saveAll(savedOrders.capture());
+        assertThat(savedOrders.getValue()).extracting(Order::getEmail, Order::getOrderDate, Order::getTotal)
+                                          .containsExactly(tuple(order.getEmail(), order.getOrderDate(), order.getTotal()));
+        assertThat(savedOrders.getValue().get(0).getOrderDetail()).extracting(OrderDetail::getPrice).containsExactly(recreatedProduct.getPrices().iterator().next());
+        assertThat(restartedIngestion.getIngestion(id).get().getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        assertThat(reopenedJournal.readUnapplied()).isEmpty();
+        reopenedJournal.close();
+    }
+
+    @Test
+    public void shouldNotReplayOrderAcceptedWhileJournalIsReplayed() throws Exception {
+        //given
+        Product product = prepareJournaledProduct(1L, 11L);
+        ProductService productService = mock(ProductService.class);
+        given(productService.getProductsByNames(Collections.singleton("Product 1"))).willReturn(Collections.singletonMap("Product 1", product));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path journalDirectory = temporaryFolder.getRoot().toPath();
+
+        OrderJournal orderJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        new OrderIngestionService(orderService, productService, objectMapper, Optional.of(orderJournal), meterRegistry, true, 2, 10, 10, 1, 1, 100, 600)
+                .enqueue(prepareJournaledOrder(product));
+        orderJournal.close();
+
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+        OrderJournal reopenedJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        OrderIngestionService restartedIngestion = new OrderIngestionService(orderService, productService, objectMapper, Optional.of(reopenedJournal), new SimpleMeterRegistry(), true, 2, 10, 10, 1, 1, 100, 600);
+        String acceptedId = restartedIngestion.enqueue(prepareJournaledOrder("customer2@cp.pc", product)).get().getId();
+
+        //when
+        restartedIngestion.start();
+        restartedIngestion.shutdown();
+
+        //then
+        ArgumentCaptor<List<Order>> savedOrders = ArgumentCaptor.forClass(List.class);
+        verify(orderService, times(2)).saveAll(savedOrders.capture());
+        assertThat(savedOrders.getAllValues()).flatExtracting(orders -> orders).extracting(Order::getEmail).containsExactly("customer1@cp.pc", "customer2@cp.pc");
+        assertThat(restartedIngestion.getIngestion(acceptedId).get().getStatus()).isEqualTo(OrderIngestionInfo.Status.CREATED);
+        reopenedJournal.close();
+        OrderJournal journalAfterReplay = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        assertThat(journalAfterReplay.readUnapplied()).isEmpty();
+        journalAfterReplay.close();
+    }
+
+    @Test
+    public void shouldMoveJournaledOrderWhoseProductDoesNotExistToDeadLetters() throws Exception {
+        //given
+        ProductService productService = mock(ProductService.class);
+        given(productService.getProductsByNames(Collections.singleton("Product 1"))).willReturn(Collections.emptyMap());
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        Path journalDirectory = temporaryFolder.getRoot().toPath();
+
+        OrderJournal orderJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        new OrderIngestionService(orderService, productService, objectMapper, Optional.of(orderJournal), meterRegistry, true, 2, 10, 10, 1, 1, 100, 600)
+                .enqueue(prepareJournaledOrder(prepareJournaledProduct(1L, 11L)));
+        orderJournal.close();
+
+        OrderJournal reopenedJournal = new OrderJournal(journalDirectory, 1024 * 1024, true);
+        OrderIngestionService restartedIngestion = new OrderIngestionService(orderService, productService, objectMapper, Optional.of(reopenedJournal), new SimpleMeterRegistry(), true, 2, 10, 10, 1, 1, 100, 600);
+
+        //when
+        restartedIngestion.start();
+        restartedIngestion.shutdown();
+
+        //then
+        //noinspection unchecked
+        verify(orderService, times(0)).saveAll(anyList());
+        assertThat(reopenedJournal.readUnapplied()).isEmpty();
+        reopenedJournal.close();
+        assertThat(OrderJournal.readCheckpoint(journalDirectory)).isPositive();
+        assertThat(OrderJournal.readDeadLetters(journalDirectory)).extracting(entry -> objectMapper.readValue(entry.getPayload(), JournaledOrder.class).getEmail())
+                                                                  .containsExactly("customer1@cp.pc");
+    }
+
+    @Test
+    public void shouldRetryFailedOrdersAndMoveThemToDeadLetters() throws Exception {
+        //given
+        //noinspection unchecked
+        given(orderService.saveAll(anyList())).willThrow(new IllegalStateException("database is down"));
+        OrderJournal orderJournal = new OrderJournal(temporaryFolder.getRoot().toPath(), 1024 * 1024, true);
+        OrderIngestionService journaledIngestion = new OrderIngestionService(orderService, null, new ObjectMapper().findAndRegisterModules(), Optional.of(orderJournal), meterRegistry, true, 2, 10, 10, 1, 1, 100, 600);
+        journaledIngestion.start();
+
+        //when
+        String id = journaledIngestion.enqueue(prepareJournaledOrder(prepareJournaledProduct(1L, 11L))).get().getId();
+        journaledIngestion.shutdown();
+
+        //then
+        assertThat(journaledIngestion.getIngestion(id).get().getStatus()).isEqualTo(OrderIngestionInfo.Status.FAILED);
+        //noinspection unchecked
+        verify(orderService, times(2)).saveAll(anyList());
+        orderJournal.close();
+        OrderJournal reopenedJournal = new OrderJournal(temporaryFolder.getRoot().toPath(), 1024 * 1024, true);
+        assertThat(reopenedJournal.readUnapplied()).isEmpty();
+        reopenedJournal.close();
+        assertThat(OrderJournal.readDeadLetters(temporaryFolder.getRoot().toPath())).hasSize(1);
+    }
+
+    private static Product prepareJournaledProduct(Long productId, Long priceId) {
+        return Product.builder()
+                      .id(productId)
+                      .name("Product 1")
+                      .prices(Collections.singleton(Price.builder().id(priceId).fromDate(LocalDateTime.of(2000, 1, 1, 10, 30)).price(new BigDecimal("10.50")).build()))
+                      .build();
+    }
+
+    private static Order prepareJournaledOrder(Product product) {
+        return prepareJournaledOrder("customer1@cp.pc", product);
+    }
+
+    private static Order prepareJournaledOrder(String email, Product product) {
+        return Order.builder()
+                    .email(email)
+                    .orderDate(LocalDateTime.of(2015, 1, 15, 0, 30))
+                    .orderDetail(Collections.singleton(OrderDetail.builder().product(product).price(product.getPrices().iterator().next()).quantity(2L).build()))
+                    .total(new BigDecimal("21.00"))
+                    .build();
+    }
+
+    private OrderIngestionInfo waitUntilSaved(String id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            OrderIngestionInfo ingestion = orderIngestionService.getIngestion(id).orElseThrow(IllegalStateException::new);
+            if (ingestion.getStatus() != OrderIngestionInfo.Status.QUEUED) {
+                return ingestion;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Order ingestion " + id + " is still queued");
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetailView;
+import com.example.productorder.order.domain.OrderView;
+import com.example.productorder.order.domain.RepricingJobInfo;
+import com.example.productorder.order.domain.RepricingRequest;
+import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.product.service.ProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "order.repricing.chunk-size=2")
+public class OrderRepricingServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2010, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private static final LocalDateTime REPRICING_DATE = LocalDateTime.of(1980, 1, 1, 0, 0);
+
+    @Autowired
+    private OrderRepricingService orderRepricingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private OrderRepository orderRepository;
+
+    @MockBean
+    private ProductService productService;
+
+    @Test
+    public void shouldRepriceOrdersOfAllChunks() throws Exception {
+        //given
+        OrderView order1 = new OrderView(1L, "customer1@cp.pc", LocalDateTime.of(2015, 1, 15, 0, 30), new BigDecimal("22552.50"));
+        OrderView order2 = new OrderView(2L, "customer2@cp.pc", LocalDateTime.of(2016, 1, 15, 0, 30), new BigDecimal("200.50"));
+        OrderView order3 = new OrderView(3L, "customer3@cp.pc", LocalDateTime.of(2017, 1, 15, 0, 30), new BigDecimal("5000.55"));
+        given(productService.getAllProducts()).willReturn(prepareProducts());
+        given(orderRepository.findOrderViews(eq(FROM), eq(TO), isNull(), eq(2))).willReturn(Arrays.asList(order1, order2));
+        given(orderRepository.findOrderViews(FROM, TO, new OrderCursor(order2.getOrderDate(), 2L), 2)).willReturn(Collections.singletonList(order3));
+        given(orderRepository.findOrderViews(FROM, TO, new OrderCursor(order3.getOrderDate(), 3L), 2)).willReturn(Collections.emptyList());
+        given(orderRepository.findOrderDetailViews(anyCollection())).willAnswer(invocation -> {
+            List<OrderDetailView> orderDetails = Arrays.asList(
+                    new OrderDetailView(1L, "Product 1", 3L, new BigDecimal("200.50"), LocalDateTime.of(2000, 1, 1, 10, 30), 10L),
+                    new OrderDetailView(1L, "Product 1", 3L, new BigDecimal("200.50"), LocalDateTime.of(2000, 1, 1, 10, 30), 90L),
+                    new OrderDetailView(1L, "Product 2", 6L, new BigDecimal("500.50"), LocalDateTime.of(2005, 1, 15, 0, 30), 5L),
+                    new OrderDetailView(2L, "Product 1", 3L, new BigDecimal("200.50"), LocalDateTime.of(2000, 1, 1, 10, 30), 1L),
+                    new OrderDetailView(3L, "Product 3", 8L, new BigDecimal("5000.55"), LocalDateTime.of(2015, 1, 15, 0, 30), 1L));
+            return orderDetails.stream()
+                               .filter(oDet -> invocation.<Collection<Long>>getArgument(0).contains(oDet.getOrderId()))
+                               .collect(Collectors.toList());
+        });
+
+        //when
+        RepricingJobInfo startedJob = orderRepricingService.startRepricing(new RepricingRequest(FROM, TO, REPRICING_DATE), LocalDateTime.now());
+        RepricingJobInfo job = waitUntilFinished(startedJob.getId());
+
+        //then
+        assertThat(job.getStatus()).isEqualTo(RepricingJobInfo.Status.DONE);
+        assertThat(job.getDate()).isEqualTo(REPRICING_DATE);
+        assertThat(job.getRepricedOrders()).isEqualTo(2);
+        assertThat(job.getUnpricedOrders()).isEqualTo(1);
+        assertThat(job.getOrderSum()).isEqualByComparingTo("22753.00");
+        //Product 1 costs 300.50 and Product 2 costs 20.50 in 1980, Product 3 has no price yet
+        assertThat(job.getRepricedOrderSum()).isEqualByComparingTo("30453.00");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : readRepricedOrders(job.getId()).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        assertThat(lines).extracting(line -> line.get("email").asText(), line -> line.get("repricedOrderSum").asText())
+                         .containsExactly(tuple("customer1@cp.pc", "30152.5"),
+                                          tuple("customer2@cp.pc", "300.5"),
+                                          tuple("customer3@cp.pc", "null"));
+    }
+
+    @Test
+    public void shouldNotFindUnknownJob() throws Exception {
+        //then
+        assertThat(orderRepricingService.getRepricingJob("unknown")).isEmpty();
+        assertThat(orderRepricingService.openRepricedOrders("unknown")).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepRunningJobWhenMoreJobsThanCacheSizeAreStarted() throws Exception {
+        //given
+        CountDownLatch productsLoaded = new CountDownLatch(1);
+        given(productService.getAllProducts()).willAnswer(invocation -> {
+            productsLoaded.await();
+            return Collections.emptyList();
+        });
+        RepricingJobInfo runningJob = orderRepricingService.startRepricing(new RepricingRequest(FROM, TO, REPRICING_DATE), LocalDateTime.now());
+
+        //when
+        RepricingJobInfo lastJob = null;
+        for (int i = 0; i < 150; i++) {
+            lastJob = orderRepricingService.startRepricing(new RepricingRequest(FROM, TO, REPRICING_DATE), LocalDateTime.now());
+        }
+        //size based eviction runs asynchronously after writes
+        Thread.sleep(200);
+
+        //then
+        try {
+            assertThat(orderRepricingService.getRepricingJob(runningJob.getId())).isPresent();
+            assertThat(orderRepricingService.openRepricedOrders(runningJob.getId())).hasValueSatisfying(this::close);
+        } finally {
+            productsLoaded.countDown();
+        }
+        assertThat(waitUntilFinished(lastJob.getId()).getStatus()).isEqualTo(RepricingJobInfo.Status.DONE);
+    }
+
+    private String readRepricedOrders(String id) throws IOException {
+        try (InputStream repricedOrders = orderRepricingService.openRepricedOrders(id).orElseThrow(IllegalStateException::new)) {
+            return StreamUtils.copyToString(repricedOrders, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void close(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RepricingJobInfo waitUntilFinished(String id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            RepricingJobInfo job = orderRepricingService.getRepricingJob(id).orElseThrow(IllegalStateException::new);
+            if (job.getStatus() == RepricingJobInfo.Status.DONE || job.getStatus() == RepricingJobInfo.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Repricing " + id + " did not finish");
+    }
+}
@@ -1,31 +1,58 @@
 package com.example.productorder.order.service;
 
+import com.example.productorder.order.domain.CustomerOrderTotal;
+import com.example.productorder.order.domain.CustomerOrdersInfo;
 import com.example.productorder.order.domain.NewOrderDetailInfo;
 import com.example.productorder.order.domain.NewOrderInfo;
 import com.example.productorder.order.domain.Order;
+import com.example.productorder.order.domain.OrderBatchResult;
+import com.example.productorder.order.domain.OrderCursor;
+import com.example.productorder.order.domain.OrderDetailView;
+import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.order.domain.OrderPage;
+import com.example.productorder.order.domain.OrderPricingPlan;
+import com.example.productorder.order.domain.OrderSumChange;
+import com.example.productorder.order.domain.OrderView;
+import com.example.productorder.order.repository.CustomerOrderTotalRepository;
 import com.example.productorder.order.repository.OrderRepository;
+import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.service.ProductService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static com.example.productorder.TestData.prepareOrders;
 import static com.example.productorder.TestData.prepareProducts;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -40,6 +67,9 @@ public class OrderServiceTest {
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private CustomerOrderTotalRepository customerOrderTotalRepository;
+
 
     private List<Order> testOrders;
 
@@ -60,6 +90,183 @@ public class OrderServiceTest {
         assertThat(orderService.save(o)).isEqualTo(o);
     }
 
+    @Test
+    public void shouldCountTotalOfSavedOrder() {
+        //given
+        Order o = testOrders.get(0);
+        BigDecimal total = o.getTotal();
+        o.setTotal(null);
+        given(orderRepository.save(o)).willReturn(o);
+
+        //then
+        assertThat(orderService.save(o).getTotal()).isEqualTo(total);
+    }
+
+    @Test
+    public void shouldNotSaveOrderAlreadyPlacedByCustomer() {
+        //given
+        Order o = testOrders.get(0);
+        given(orderRepository.saveAndFlush(o)).willThrow(new DataIntegrityViolationException("could not execute statement",
+                                                                                            new ConstraintViolationException("could not execute statement", new SQLException(),
+                                                                                                                             "\"" + Order.EMAIL_ORDER_DATE_INDEX + "_INDEX_8 ON PUBLIC.ORDERS(EMAIL, ORDER_DATE) VALUES ('customer1@cp.pc', 1)\"")));
+
+        //then
+        assertThat(orderService.saveIfNotPlaced(o)).isEmpty();
+    }
+
+    @Test
+    public void shouldRethrowOtherIntegrityViolationsWhenSavingOrder() {
+        //given
+        Order o = testOrders.get(0);
+        given(orderRepository.saveAndFlush(o)).willThrow(new DataIntegrityViolationException("could not execute statement",
+                                                                                            new ConstraintViolationException("could not execute statement", new SQLException(), null)));
+
+        //then
+        assertThatThrownBy(() -> orderService.saveIfNotPlaced(o)).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    public void shouldBackfillOrderTotals() {
+        //given
+        Order o = testOrders.get(0);
+        BigDecimal total = o.getTotal();
+        o.setTotal(null);
+        given(orderRepository.findFirst500ByTotalIsNull()).willReturn(Collections.singletonList(o));
+
+        //then
+        assertThat(orderService.backfillOrderTotals()).isEqualTo(1);
+        assertThat(o.getTotal()).isEqualTo(total);
+    }
+
+    @Test
+    public void shouldReturnOrderInfosBuiltFromProjections() {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2018, 1, 15, 0, 30);
+        LocalDateTime fromDate = LocalDateTime.of(2017, 1, 15, 0, 30);
+        List<OrderView> orders = Arrays.asList(new OrderView(1L, "customer1@cp.pc", orderDate, new BigDecimal("30.00")),
+                                               new OrderView(2L, "customer2@cp.pc", orderDate, BigDecimal.ZERO));
+        given(orderRepository.findOrderViews(null, orderDate, null, null)).willReturn(orders);
+        given(orderRepository.findOrderDetailViews(Arrays.asList(1L, 2L))).willReturn(Arrays.asList(new OrderDetailView(1L, "Product 1", 5L, BigDecimal.TEN, fromDate, 2L),
+                                                                                                    new OrderDetailView(1L, "Product 2", 6L, BigDecimal.TEN, fromDate, 1L)));
+        Map<String, Product> products = prepareProducts().stream()
+                                                         .limit(2)
+                                                         .collect(Collectors.toMap(Product::getName, Function.identity()));
+        given(productService.getProductsByNames(new HashSet<>(Arrays.asList("Product 1", "Product 2")))).willReturn(products);
+
+        //when
+        List<OrderInfo> orderInfos = orderService.getOrderInfos(null, orderDate);
+
+        //then
+        assertThat(orderInfos).extracting(OrderInfo::getEmail).containsExactly("customer1@cp.pc", "customer2@cp.pc");
+        assertThat(orderInfos.get(0).getOrderSum()).isEqualTo(new BigDecimal("30.00"));
+        assertThat(orderInfos.get(0).getOrderDetail()).extracting(orderDetail -> orderDetail.getProduct().getName()).containsExactlyInAnyOrder("Product 1", "Product 2");
+        //price history of ordered products is part of the response
+        assertThat(orderInfos.get(0).getOrderDetail()).allMatch(orderDetail -> orderDetail.getProduct().getPrices().equals(products.get(orderDetail.getProduct().getName()).getPrices()));
+        assertThat(orderInfos.get(1).getOrderDetail()).isEmpty();
+        verify(orderRepository, times(0)).findAll();
+    }
+
+    @Test
+    public void shouldExportOrdersPageByPageUntilLastPage() {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2018, 1, 15, 0, 30);
+        List<OrderView> firstPage = LongStream.rangeClosed(1, 500)
+                                              .mapToObj(id -> new OrderView(id, "customer" + id + "@cp.pc", orderDate, BigDecimal.ONE))
+                                              .collect(Collectors.toList());
+        given(orderRepository.findOrderViews(orderDate, null, null, 500)).willReturn(firstPage);
+        given(orderRepository.findOrderViews(orderDate, null, new OrderCursor(orderDate, 500L), 500)).willReturn(Collections.singletonList(new OrderView(501L, "customer501@cp.pc", orderDate, BigDecimal.ONE)));
+        List<OrderInfo> exportedOrders = new ArrayList<>();
+
+        //when
+        orderService.exportOrders(orderDate, null, exportedOrders::add);
+
+        //then
+        assertThat(exportedOrders).hasSize(501);
+        assertThat(exportedOrders.get(500).getEmail()).isEqualTo("customer501@cp.pc");
+        verify(orderRepository, times(2)).findOrderViews(any(), any(), any(), any());
+        verify(orderRepository, times(2)).findOrderDetailViews(any());
+    }
+
+    @Test
+    public void shouldReturnOrdersPageWithNextCursor() {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2018, 1, 15, 0, 30);
+        List<OrderView> orders = Arrays.asList(new OrderView(1L, "customer1@cp.pc", orderDate, BigDecimal.ONE),
+                                               new OrderView(2L, "customer2@cp.pc", orderDate, BigDecimal.ONE),
+                                               new OrderView(3L, "customer3@cp.pc", orderDate, BigDecimal.ONE));
+        given(orderRepository.findOrderViews(null, null, null, 3)).willReturn(orders);
+
+        //when
+        OrderPage orderPage = orderService.getOrdersPage(null, null, null, 2);
+
+        //then
+        assertThat(orderPage.getOrders()).extracting(OrderInfo::getEmail).containsExactly("customer1@cp.pc", "customer2@cp.pc");
+        assertThat(orderPage.getNextCursor()).isEqualTo(new OrderCursor(orderDate, 2L));
+        verify(orderRepository, times(1)).findOrderDetailViews(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void shouldReturnLastOrdersPageWithoutNextCursor() {
+        //given
+        OrderCursor after = new OrderCursor(LocalDateTime.of(2018, 1, 15, 0, 30), 2L);
+        given(orderRepository.findOrderViews(null, null, after, 3)).willReturn(Collections.singletonList(new OrderView(3L, "customer3@cp.pc", after.getOrderDate(), BigDecimal.ONE)));
+
+        //when
+        OrderPage orderPage = orderService.getOrdersPage(null, null, after, 2);
+
+        //then
+        assertThat(orderPage.getOrders()).extracting(OrderInfo::getEmail).containsExactly("customer3@cp.pc");
+        assertThat(orderPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void shouldAddSavedOrderToCustomerTotals() {
+        //given
+        Order o = testOrders.get(0);
+        given(orderRepository.save(o)).willReturn(o);
+
+        //when
+        orderService.save(o);
+
+        //then
+        verify(customerOrderTotalRepository, times(1)).add(o.getEmail(), 1, o.getTotal());
+    }
+
+    @Test
+    public void shouldReturnCustomerOrdersWithTheirTotals() {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2018, 1, 15, 0, 30);
+        List<OrderView> orders = Arrays.asList(new OrderView(1L, "customer1@cp.pc", orderDate, BigDecimal.ONE),
+                                               new OrderView(2L, "customer1@cp.pc", orderDate.plusDays(1), BigDecimal.ONE),
+                                               new OrderView(3L, "customer1@cp.pc", orderDate.plusDays(2), BigDecimal.ONE));
+        given(customerOrderTotalRepository.findById("customer1@cp.pc")).willReturn(Optional.of(new CustomerOrderTotal("customer1@cp.pc", 3L, BigDecimal.valueOf(3))));
+        given(orderRepository.findOrderViewsByEmail("customer1@cp.pc", null, 3)).willReturn(orders);
+
+        //when
+        Optional<CustomerOrdersInfo> customerOrders = orderService.getCustomerOrders("customer1@cp.pc", null, 2);
+
+        //then
+        assertThat(customerOrders).hasValueSatisfying(info -> {
+            assertThat(info.getOrderCount()).isEqualTo(3L);
+            assertThat(info.getTotal()).isEqualByComparingTo("3");
+            assertThat(info.getOrders()).extracting(OrderInfo::getOrderDate).containsExactly(orderDate, orderDate.plusDays(1));
+            assertThat(info.getNextCursor()).isEqualTo(new OrderCursor(orderDate.plusDays(1), 2L));
+        });
+    }
+
+    @Test
+    public void shouldNotLookForOrdersOfUnknownCustomer() {
+        //given
+        given(customerOrderTotalRepository.findById("unknown@cp.pc")).willReturn(Optional.empty());
+
+        //when
+        Optional<CustomerOrdersInfo> customerOrders = orderService.getCustomerOrders("unknown@cp.pc", null, 2);
+
+        //then
+        assertThat(customerOrders).isEmpty();
+        verify(orderRepository, never()).findOrderViewsByEmail(any(), any(), any());
+    }
+
     @Test
     public void shouldReturnAllOrders() {
         //given
@@ -115,6 +322,82 @@ public class OrderServiceTest {
         assertThat(orderService.countOrderTotalIfItWasPlacedOnSpecificDate(o, date)).isEqualTo(new BigDecimal(10005.5).setScale(2, RoundingMode.HALF_UP));
     }
 
+    @Test
+    public void shouldCacheOrderIfItWasPlacedOnSpecificDate() {
+        //given
+        Order o = testOrders.get(1);
+        LocalDateTime date = LocalDateTime.of(2015, 2, 15, 0, 30);
+
+        //when
+        OrderInfo orderInfo = orderService.getOrderIfItWasPlacedOnSpecificDate(o, date);
+
+        //then
+        assertThat(orderInfo.getOrderSum()).isEqualTo(orderService.countOrderTotalIfItWasPlacedOnSpecificDate(o, date));
+        assertThat(orderService.getCachedOrderIfItWasPlacedOnSpecificDate(o.getId(), date)).contains(orderInfo);
+        assertThat(orderService.getCachedOrderIfItWasPlacedOnSpecificDate(o.getId(), date.plusDays(1))).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnCachedOrderWithCurrentPricesOfItsProducts() {
+        //given
+        Order o = testOrders.get(1);
+        LocalDateTime date = LocalDateTime.of(2015, 2, 15, 0, 30);
+        orderService.getOrderIfItWasPlacedOnSpecificDate(o, date);
+        Product product = prepareProducts().get(2);
+        product.addPrice(Price.builder().price(BigDecimal.ONE).fromDate(LocalDateTime.of(2030, 1, 1, 0, 0)).build());
+        given(productService.getProductsByNames(Collections.singleton(product.getName()))).willReturn(Collections.singletonMap(product.getName(), product));
+
+        //when
+        Optional<OrderInfo> cachedOrderInfo = orderService.getCachedOrderIfItWasPlacedOnSpecificDate(o.getId(), date);
+
+        //then
+        assertThat(cachedOrderInfo).isPresent();
+        assertThat(cachedOrderInfo.get().getOrderDetail()).extracting(orderDetail -> orderDetail.getProduct().getPrices())
+                                                          .containsExactly(product.getPrices());
+    }
+
+    @Test
+    public void shouldReturnOrderSumChangesMatchingOrderPlacedOnEveryDate() {
+        for (Order o : testOrders) {
+            //given
+            LocalDateTime from = LocalDateTime.of(1940, 1, 1, 0, 0);
+            LocalDateTime to = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+            //when
+            List<OrderSumChange> unboundedTimeline = orderService.getOrderSumTimeline(o, null, null);
+            List<OrderSumChange> timeline = orderService.getOrderSumTimeline(o, from, to);
+
+            //then
+            for (LocalDateTime date = from.plusDays(1); !date.isAfter(to); date = date.plusDays(30)) {
+                LocalDateTime placedOn = date;
+                boolean allProductsHavePrice = o.getOrderDetail()
+                                                .stream()
+                                                .allMatch(oDet -> oDet.getProduct().getPriceTimeline().lower(placedOn) != null);
+                Optional<BigDecimal> unboundedOrderSum = orderSumOn(unboundedTimeline, placedOn);
+                Optional<BigDecimal> orderSum = orderSumOn(timeline, placedOn);
+                if (allProductsHavePrice) {
+                    BigDecimal expected = orderService.countOrderTotalIfItWasPlacedOnSpecificDate(o, placedOn);
+                    assertThat(unboundedOrderSum).hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(expected));
+                    assertThat(orderSum).hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(expected));
+                } else {
+                    assertThat(unboundedOrderSum).isEmpty();
+                    assertThat(orderSum).isEmpty();
+                }
+            }
+            for (int i = 1; i < timeline.size(); i++) {
+                assertThat(timeline.get(i).getDate()).isAfter(timeline.get(i - 1).getDate());
+                assertThat(timeline.get(i).getOrderSum()).isNotEqualByComparingTo(timeline.get(i - 1).getOrderSum());
+            }
+        }
+    }
+
+    private Optional<BigDecimal> orderSumOn(List<OrderSumChange> timeline, LocalDateTime date) {
+        return timeline.stream()
+                       .filter(change -> change.getDate().isBefore(date))
+                       .reduce((first, second) -> second)
+                       .map(OrderSumChange::getOrderSum);
+    }
+
     @Test
     public void shouldCountOrderTotal() {
         //given
@@ -143,11 +426,78 @@ public class OrderServiceTest {
 
         LocalDateTime orderDate = LocalDateTime.of(2015, 1, 15, 0, 30);
 
-        given(productService.getProductByName(any(String.class))).willReturn(Optional.of(o.getOrderDetail().stream().findFirst().get().getProduct()));
+        Product product = o.getOrderDetail().stream().findFirst().get().getProduct();
+        //noinspection unchecked
+        given(productService.getProductsByNames(any(Set.class))).willReturn(Collections.singletonMap(product.getName(), product));
 
         //then
         assertThat(orderService.createNewOrder(newOrderInfo, orderDate)).isEqualTo(o);
     }
 
+    @Test
+    public void shouldPreparePricingPlanWithOneProductLookup() {
+        //given
+        Order o = testOrders.get(0);
+        List<NewOrderDetailInfo> newOrderDetailInfos = o.getOrderDetail()
+                                                        .stream()
+                                                        .map(orderDetail -> NewOrderDetailInfo.builder()
+                                                                                              .productName(orderDetail.getProduct().getName())
+                                                                                              .quantity(orderDetail.getQuantity())
+                                                                                              .build())
+                                                        .collect(Collectors.toList());
+        NewOrderInfo newOrderInfo = NewOrderInfo.builder()
+                                                .email(o.getEmail())
+                                                .productsToOrder(newOrderDetailInfos)
+                                                .build();
+        Product product = o.getOrderDetail().stream().findFirst().get().getProduct();
+        //noinspection unchecked
+        given(productService.getProductsByNames(any(Set.class))).willReturn(Collections.singletonMap(product.getName(), product));
+
+        //when
+        OrderPricingPlan pricingPlan = orderService.prepareOrderPricingPlan(newOrderInfo);
+
+        //then
+        //noinspection unchecked
+        verify(productService, times(1)).getProductsByNames(any(Set.class));
+        assertThat(pricingPlan.getOrderDetails()).hasSize(2);
+        assertThat(pricingPlan.allProductsExist()).isFalse();
+    }
+
+    @Test
+    public void shouldCreateNewOrdersWithPerOrderResults() {
+        //given
+        Order o = testOrders.get(1);
+        Product product = o.getOrderDetail().stream().findFirst().get().getProduct();
+        List<NewOrderDetailInfo> newOrderDetailInfos = Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                   .productName(product.getName())
+                                                                                                   .quantity(10L)
+                                                                                                   .build());
+        List<NewOrderInfo> newOrderInfos = Arrays.asList(NewOrderInfo.builder().email(o.getEmail()).productsToOrder(newOrderDetailInfos).build(),
+                NewOrderInfo.builder().email("incorrectEmail").productsToOrder(newOrderDetailInfos).build(),
+                NewOrderInfo.builder().email(o.getEmail()).productsToOrder(newOrderDetailInfos).build(),
+                NewOrderInfo.builder().email("customer3@cp.pc").productsToOrder(Collections.singletonList(NewOrderDetailInfo.builder()
+                                                                                                                              .productName("notExistingProduct")
+                                                                                                                              .quantity(1L)
+                                                                                                                              .build())).build());
+        LocalDateTime orderDate = LocalDateTime.of(2015, 1, 15, 0, 30);
+
+        //noinspection unchecked
+        given(productService.getProductsByNames(any(Set.class))).willReturn(Collections.singletonMap(product.getName(), product));
+        //noinspection unchecked
+        given(orderRepository.findByEmailInAndOrderDate(any(Set.class), any(LocalDateTime.class))).willReturn(Collections.emptyList());
+        //noinspection unchecked
+        given(orderRepository.saveAll(any(List.class))).willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        List<OrderBatchResult> results = orderService.createNewOrders(newOrderInfos, orderDate);
+
+        //then
+        assertThat(results).extracting(OrderBatchResult::getStatus)
+                           .containsExactly(OrderBatchResult.Status.CREATED, OrderBatchResult.Status.INVALID, OrderBatchResult.Status.CONFLICT, OrderBatchResult.Status.INVALID);
+        assertThat(results.get(0).getOrder().getOrderSum()).isEqualTo(new BigDecimal(10005.50).setScale(2, RoundingMode.HALF_UP));
+        //noinspection unchecked
+        verify(productService, times(1)).getProductsByNames(any(Set.class));
+    }
+
 
 }
\ No newline at end of file
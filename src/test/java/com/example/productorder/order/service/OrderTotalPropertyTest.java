@@ -0,0 +1,112 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.OrderDetail;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the minor units total with the exact BigDecimal total on randomly generated orders.
+ */
+public class OrderTotalPropertyTest {
+
+    private static final int ORDERS = 20_000;
+
+    private final OrderService orderService = new OrderService(null, null, null, null, null, null, null, null);
+
+    @Test
+    public void shouldCountSameTotalAsExactArithmetic() {
+        //given
+        Random random = new Random(20181209L);
+
+        for (int i = 0; i < ORDERS; i++) {
+            Set<OrderDetail> orderDetails = randomOrderDetails(random);
+
+            //when
+            BigDecimal total = orderService.countOrderTotal(orderDetails);
+
+            //then equals also compares scale, so results have to be identical
+            assertThat(total).as("order %s", orderDetails).isEqualTo(orderService.countOrderTotalExact(orderDetails));
+        }
+    }
+
+    @Test
+    public void shouldFallBackToExactArithmeticOnOverflow() {
+        //given
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        orderDetails.add(orderDetail(new BigDecimal("92233720368547758.07"), 1L, 1));
+        orderDetails.add(orderDetail(new BigDecimal("0.01"), 1L, 2));
+
+        //when
+        BigDecimal total = orderService.countOrderTotal(orderDetails);
+
+        //then
+        assertThat(total).isEqualTo(new BigDecimal("92233720368547758.08"));
+    }
+
+    @Test
+    public void shouldRoundPricesWithMoreDecimalPlacesHalfUp() {
+        //given
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        orderDetails.add(orderDetail(new BigDecimal("0.125"), 1L, 1));
+        orderDetails.add(orderDetail(new BigDecimal("1.10"), 2L, 2));
+
+        //when
+        BigDecimal total = orderService.countOrderTotal(orderDetails);
+
+        //then
+        assertThat(total).isEqualTo(new BigDecimal("2.33"));
+    }
+
+    private Set<OrderDetail> randomOrderDetails(Random random) {
+        Set<OrderDetail> orderDetails = new HashSet<>();
+        int lines = random.nextInt(20);
+        for (int line = 0; line < lines; line++) {
+            orderDetails.add(orderDetail(randomPrice(random), randomQuantity(random), line));
+        }
+        return orderDetails;
+    }
+
+    private BigDecimal randomPrice(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                //more decimal places than cents, e.g. prices created from doubles
+                return new BigDecimal(random.nextDouble() * 1000);
+            case 1:
+                return BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(5));
+            case 2:
+                //close to the long limit in cents
+                return BigDecimal.valueOf(Long.MAX_VALUE - random.nextInt(1000), 2);
+            case 3:
+                return BigDecimal.valueOf(random.nextInt(100), -random.nextInt(3));
+            case 4:
+                return BigDecimal.valueOf(random.nextLong() >>> random.nextInt(64), 2);
+            default:
+                return BigDecimal.valueOf(random.nextInt(100_000), 2);
+        }
+    }
+
+    private long randomQuantity(Random random) {
+        return random.nextInt(4) == 0 ? random.nextLong() >>> random.nextInt(64) : 1 + random.nextInt(100);
+    }
+
+    private OrderDetail orderDetail(BigDecimal price, long quantity, int line) {
+        return OrderDetail.builder()
+                          .id((long) line)
+                          .product(Product.builder().name("Product " + line).build())
+                          .price(Price.builder()
+                                      .price(price)
+                                      .fromDate(LocalDateTime.of(2000, 1, 1, 10, 30))
+                                      .build())
+                          .quantity(quantity)
+                          .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.productorder.order.service;
+
+import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.domain.ProductSavedEvent;
+import com.example.productorder.product.helper.PriceHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.NavigableSet;
+
+import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OrderWhatIfCacheTest {
+
+    private OrderWhatIfCache orderWhatIfCache;
+
+    private Product product;
+
+    private NavigableSet<Price> prices;
+
+    @Before
+    public void setUp() {
+        orderWhatIfCache = new OrderWhatIfCache(100, 600);
+        product = prepareProducts().get(0);
+        prices = PriceHelper.convertToNavigableSet(product.getPrices());
+    }
+
+    @Test
+    public void shouldDropOnlyResultsCountedWithPriceReplacedByNewPrice() {
+        //given
+        LocalDateTime beforeNewPrice = prices.last().getFromDate().plusDays(1);
+        LocalDateTime afterNewPrice = prices.last().getFromDate().plusDays(3);
+        cache(1L, beforeNewPrice, product);
+        cache(1L, afterNewPrice, product);
+        cache(2L, afterNewPrice, prepareProducts().get(1));
+
+        //when
+        product.addPrice(Price.builder().fromDate(prices.last().getFromDate().plusDays(2)).price(BigDecimal.ONE).build());
+        orderWhatIfCache.onProductSaved(new ProductSavedEvent(product));
+
+        //then
+        assertThat(orderWhatIfCache.get(1L, beforeNewPrice)).isPresent();
+        assertThat(orderWhatIfCache.get(1L, afterNewPrice)).isEmpty();
+        assertThat(orderWhatIfCache.get(2L, afterNewPrice)).isPresent();
+    }
+
+    @Test
+    public void shouldKeepResultsWhenSavedProductPricesDidNotChange() {
+        //given
+        LocalDateTime date = prices.last().getFromDate().plusDays(1);
+        cache(1L, date, product);
+
+        //when
+        orderWhatIfCache.onProductSaved(new ProductSavedEvent(product));
+
+        //then
+        assertThat(orderWhatIfCache.get(1L, date)).isPresent();
+    }
+
+    @Test
+    public void shouldDropIndexedKeysWithResults() {
+        //given
+        LocalDateTime date = prices.last().getFromDate().plusDays(1);
+        cache(1L, date, product);
+        cache(2L, date, prepareProducts().get(1));
+
+        //when
+        orderWhatIfCache.invalidateAll();
+
+        //then
+        assertThat(orderWhatIfCache.indexedProducts()).isZero();
+    }
+
+    @Test
+    public void shouldDropResultCachedAgainAfterItWasDropped() {
+        //given
+        LocalDateTime date = prices.last().getFromDate().plusDays(3);
+        cache(1L, date, product);
+        product.addPrice(Price.builder().fromDate(prices.last().getFromDate().plusDays(1)).price(BigDecimal.ONE).build());
+        orderWhatIfCache.onProductSaved(new ProductSavedEvent(product));
+        cache(1L, date, product);
+
+        //when
+        product.addPrice(Price.builder().fromDate(prices.last().getFromDate().plusDays(2)).price(BigDecimal.TEN).build());
+        orderWhatIfCache.onProductSaved(new ProductSavedEvent(product));
+
+        //then
+        assertThat(orderWhatIfCache.get(1L, date)).isEmpty();
+        assertThat(orderWhatIfCache.indexedProducts()).isZero();
+    }
+
+    private void cache(Long orderId, LocalDateTime date, Product orderedProduct) {
+        orderWhatIfCache.put(orderId, date, OrderInfo.builder().email("customer" + orderId + "@cp.pc").orderDate(date).orderSum(BigDecimal.TEN).build(),
+                             Collections.singletonMap(orderedProduct.getName(), orderedProduct.getPriceTimeline().lower(date)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.productorder.product.controller;
+
+import com.example.productorder.SqlStatements;
+import com.example.productorder.config.SqlStatisticsFilter;
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.repository.ProductRepository;
+import com.example.productorder.product.service.ProductCache;
+import com.example.productorder.product.service.ProductService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//pins how many SQL statements product endpoints may issue, more of them usually means N+1 queries
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("debug")
+public class ProductControllerSqlStatementsTest {
+
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 10, 30);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Before
+    public void setUp() {
+        for (int i = 1; i <= 10; i++) {
+            Product product = Product.builder().name("Product " + i).prices(new HashSet<>()).build();
+            for (int year = 0; year < 5; year++) {
+                product.addPrice(Price.builder().price(BigDecimal.valueOf(year + i)).fromDate(FIRST_PRICE_DATE.plusYears(year)).build());
+            }
+            productService.save(product);
+        }
+        entityManagerFactory.getCache().evictAll();
+        productCache.invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+        productCache.invalidateAll();
+    }
+
+    @Test
+    public void shouldGetAllProductsWithTheirPricesInFewStatements() throws Exception {
+        mvc.perform(get("/products"))
+           .andExpect(status().isOk())
+           .andExpect(header().string(SqlStatisticsFilter.ROWS_HEADER, "50"))
+           .andExpect(SqlStatements.atMost(1));
+    }
+
+    @Test
+    public void shouldGetProductInFewStatements() throws Exception {
+        mvc.perform(get("/products/Product 1"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(1));
+    }
+
+    @Test
+    public void shouldGetProductPriceInFewStatements() throws Exception {
+        mvc.perform(get("/products/Product 1/price").param("at", "2002-06-01T00:00:00"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(1));
+    }
+
+    @Test
+    public void shouldGetPricesOfManyProductsInFewStatements() throws Exception {
+        mvc.perform(post("/products/prices/batch").contentType(MediaType.APPLICATION_JSON)
+                                                  .content("[{\"productName\":\"Product 1\",\"at\":\"2002-06-01T00:00:00\"}," +
+                                                           "{\"productName\":\"Product 2\",\"at\":\"2003-06-01T00:00:00\"}," +
+                                                           "{\"productName\":\"Product 3\",\"at\":\"2004-06-01T00:00:00\"}]"))
+           .andExpect(status().isOk())
+           .andExpect(SqlStatements.atMost(6));
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.productorder.product.controller;
 
+import com.example.productorder.config.ApiMetrics;
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceOnDateInfo;
 import com.example.productorder.product.domain.PriceUpdateInfo;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.domain.ProductInfo;
@@ -9,22 +11,27 @@ import com.example.productorder.product.helper.ProductHelper;
 import com.example.productorder.product.service.PriceService;
 import com.example.productorder.product.service.ProductService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.is;
 import static org.mockito.BDDMockito.given;
@@ -35,6 +42,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(ProductController.class)
+@Import({ApiMetrics.class, SimpleMeterRegistry.class})
 public class ProductControllerTest {
 
     @MockBean
@@ -54,10 +62,15 @@ public class ProductControllerTest {
 
     private List<Product> testProducts;
 
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
 
     @Before
     public void setUp() {
         testProducts = prepareProducts();
+        //one registry for the whole context, counters of earlier tests are dropped
+        meterRegistry.getMeters().forEach(meterRegistry::remove);
     }
 
     @Test
@@ -93,6 +106,7 @@ public class ProductControllerTest {
                 .content(asJsonString(productInfo)))
            .andExpect(status().isConflict());
 
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "createProduct", "outcome", "conflict").count()).isEqualTo(1);
         verify(productService, times(0)).save(productInfo);
         verify(productService, times(1)).getProductByName(productInfo.getName());
         verifyNoMoreInteractions(productService);
@@ -180,8 +194,8 @@ public class ProductControllerTest {
                                                          .productName(testProduct.getName())
                                                          .build();
 
-        given(priceService.save(any(PriceUpdateInfo.class))).willReturn(PriceHelper.convertToPrice(newCurrentPrice));
-        given(productService.save(any(Product.class))).willReturn(testProducts.get(0));
+        int cachedPrices = testProduct.getPrices().size();
+        given(productService.addPrice(testProduct.getName(), PriceHelper.convertToPrice(newCurrentPrice))).willReturn(Optional.of(testProduct));
         // then
         mvc.perform(put("/products/price")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -189,8 +203,9 @@ public class ProductControllerTest {
            .andExpect(status().isOk());
 
         verify(productService, times(1)).getProductByName(testProduct.getName());
-        verify(productService, times(1)).save(testProduct);
-        verify(priceService, times(1)).save(newCurrentPrice);
+        verify(productService, times(1)).addPrice(testProduct.getName(), PriceHelper.convertToPrice(newCurrentPrice));
+        //product returned by getProductByName may be cached and shared, it is not changed
+        assertThat(testProduct.getPrices()).hasSize(cachedPrices);
         verifyNoMoreInteractions(productService);
         verifyNoMoreInteractions(priceService);
     }
@@ -217,6 +232,8 @@ public class ProductControllerTest {
                 .content(asJsonString(newCurrentPrice)))
            .andExpect(status().isBadRequest());
 
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "updateProductCurrentPrice", "outcome", "price_not_newer").count()).isEqualTo(1);
+
         verify(productService, times(1)).getProductByName(testProduct.getName());
 
         verifyNoMoreInteractions(productService);
@@ -256,7 +273,7 @@ public class ProductControllerTest {
 
         // given
         Product testProduct = testProducts.get(0);
-        given(productService.getProductByName(testProduct.getName())).willReturn(Optional.of(testProduct));
+        given(productService.getProductWithCurrentPriceByName(testProduct.getName())).willReturn(Optional.of(testProduct));
 
         Price currentPrice = PriceHelper.convertToNavigableSet(testProduct.getPrices()).last();
 
@@ -265,7 +282,7 @@ public class ProductControllerTest {
            .andExpect(status().isOk())
            .andExpect(jsonPath("$.price", is(currentPrice.getPrice().doubleValue())));
 
-        verify(productService, times(1)).getProductByName(testProduct.getName());
+        verify(productService, times(1)).getProductWithCurrentPriceByName(testProduct.getName());
         verifyNoMoreInteractions(productService);
     }
 
@@ -274,16 +291,91 @@ public class ProductControllerTest {
 
         // given
         Product testProduct = testProducts.get(0);
-        given(productService.getProductByName(testProduct.getName())).willReturn(Optional.empty());
+        given(productService.getProductWithCurrentPriceByName(testProduct.getName())).willReturn(Optional.empty());
 
         // then
         mvc.perform(get("/products/{name}/price", testProduct.getName()))
            .andExpect(status().isNotFound());
 
-        verify(productService, times(1)).getProductByName(testProduct.getName());
+        verify(productService, times(1)).getProductWithCurrentPriceByName(testProduct.getName());
         verifyNoMoreInteractions(productService);
     }
 
+    @Test
+    public void shouldReturnNotFoundIfProductHasNoCurrentPrice() throws Exception {
+
+        // given
+        given(productService.getProductWithCurrentPriceByName("Product 9")).willReturn(Optional.of(Product.builder().name("Product 9").build()));
+
+        // then
+        mvc.perform(get("/products/{name}/price", "Product 9"))
+           .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getCurrentPrice", "outcome", "price_not_found").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldGetPriceForProductAtDate() throws Exception {
+
+        // given
+        Price price = PriceHelper.convertToNavigableSet(testProducts.get(0).getPrices()).first();
+        LocalDateTime at = price.getFromDate().plusDays(1);
+        given(priceService.getPriceOfProductAt("Product 1", at)).willReturn(Optional.of(price));
+
+        // then
+        mvc.perform(get("/products/{name}/price", "Product 1").param("at", "1950-01-02T10:30:00"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.price", is(price.getPrice().doubleValue())));
+
+        verifyZeroInteractions(productService);
+    }
+
+    @Test
+    public void shouldReturnNotFoundIfNoPriceAtDate() throws Exception {
+
+        // given
+        given(priceService.getPriceOfProductAt(any(String.class), any(LocalDateTime.class))).willReturn(Optional.empty());
+
+        // then
+        mvc.perform(get("/products/{name}/price", "Product 1").param("at", "1900-01-01T10:30:00"))
+           .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getPriceAt", "outcome", "price_not_found").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldGetPricesForProductsAtDates() throws Exception {
+
+        // given
+        Price price = PriceHelper.convertToNavigableSet(testProducts.get(0).getPrices()).first();
+        List<PriceOnDateInfo> pricesOnDate = Arrays.asList(new PriceOnDateInfo("Product 1", price.getFromDate(), null),
+                                                           new PriceOnDateInfo("Product 9", price.getFromDate(), null));
+        given(priceService.getPricesOfProductsAt(pricesOnDate)).willReturn(Arrays.asList(pricesOnDate.get(0).toBuilder().price(price).build(),
+                                                                                         pricesOnDate.get(1)));
+
+        // then
+        mvc.perform(post("/products/prices/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(pricesOnDate)))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$[0].productName", is("Product 1")))
+           .andExpect(jsonPath("$[0].price.price", is(price.getPrice().doubleValue())))
+           .andExpect(jsonPath("$[1].price").doesNotExist());
+    }
+
+    @Test
+    public void shouldReturnBadRequestIfDateOfPriceIsMissing() throws Exception {
+
+        // then
+        mvc.perform(post("/products/prices/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"productName\":\"Product 1\"}]"))
+           .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(priceService);
+        assertThat(meterRegistry.counter(ApiMetrics.OUTCOME_COUNTER, "operation", "getPricesAt", "outcome", "validation_failed").count()).isEqualTo(1);
+    }
+
     private String asJsonString(final Object obj) {
         try {
             return objectMapper.writeValueAsString(obj);
@@ -0,0 +1,84 @@
+package com.example.productorder.product.domain;
+
+import com.example.productorder.product.helper.PriceHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+
+import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PriceTimelineTest {
+
+    private Product testProduct;
+
+    @Before
+    public void setUp() {
+        testProduct = prepareProducts().get(0);
+    }
+
+    @Test
+    public void shouldAnswerLookupsLikeNavigableSet() {
+        //given
+        NavigableSet<Price> nsPrices = PriceHelper.convertToNavigableSet(testProduct.getPrices());
+        PriceTimeline timeline = PriceTimeline.of(testProduct.getPrices());
+
+        //then
+        assertThat(timeline.first()).isEqualTo(nsPrices.first());
+        assertThat(timeline.last()).isEqualTo(nsPrices.last());
+        for (Price price : nsPrices) {
+            for (LocalDateTime date : new LocalDateTime[]{price.getFromDate().minusNanos(1), price.getFromDate(), price.getFromDate().plusNanos(1)}) {
+                Price fakePrice = Price.builder().fromDate(date).price(BigDecimal.ZERO).build();
+                assertThat(timeline.lower(date)).isEqualTo(nsPrices.lower(fakePrice));
+                assertThat(timeline.floor(date)).isEqualTo(nsPrices.floor(fakePrice));
+                assertThat(timeline.ceiling(date)).isEqualTo(nsPrices.ceiling(fakePrice));
+                assertThat(timeline.higherIndex(date)).isEqualTo(nsPrices.headSet(fakePrice, true).size());
+                assertThat(timeline.ceilingIndex(date)).isEqualTo(nsPrices.headSet(fakePrice, false).size());
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnNullsForEmptyTimeline() {
+        //given
+        PriceTimeline timeline = PriceTimeline.of(null);
+
+        //then
+        assertThat(timeline.isEmpty()).isTrue();
+        assertThat(timeline.first()).isNull();
+        assertThat(timeline.last()).isNull();
+        assertThat(timeline.lower(LocalDateTime.now())).isNull();
+    }
+
+    @Test
+    public void shouldCollapsePricesWithSameFromDate() {
+        //given
+        LocalDateTime fromDate = LocalDateTime.of(2000, 1, 1, 10, 30);
+        Set<Price> prices = new HashSet<>();
+        prices.add(Price.builder().fromDate(fromDate).price(BigDecimal.ONE).build());
+        prices.add(Price.builder().fromDate(fromDate).price(BigDecimal.TEN).build());
+
+        //then
+        assertThat(PriceTimeline.of(prices).size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRebuildTimelineWhenPriceAdded() {
+        //given
+        Price newCurrentPrice = Price.builder()
+                                     .fromDate(testProduct.getPriceTimeline().last().getFromDate().plusDays(1L))
+                                     .price(new BigDecimal(1000))
+                                     .build();
+
+        //when
+        testProduct.addPrice(newCurrentPrice);
+
+        //then
+        assertThat(testProduct.getPriceTimeline().last()).isEqualTo(newCurrentPrice);
+    }
+}
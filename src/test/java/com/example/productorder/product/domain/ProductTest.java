@@ -0,0 +1,57 @@
+package com.example.productorder.product.domain;
+
+import com.example.productorder.product.helper.PriceHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.NavigableSet;
+
+import static com.example.productorder.TestData.prepareProducts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductTest {
+
+    private Product testProduct;
+
+    @Before
+    public void setUp() {
+        testProduct = prepareProducts().get(0);
+    }
+
+    @Test
+    public void shouldTakeCurrentPriceAndFirstPriceDateFromPrices() {
+        //given
+        NavigableSet<Price> nsPrices = PriceHelper.convertToNavigableSet(testProduct.getPrices());
+
+        //then
+        assertThat(testProduct.getCurrentPrice()).isEqualTo(nsPrices.last());
+        assertThat(testProduct.getFirstPriceDate()).isEqualTo(nsPrices.first().getFromDate());
+    }
+
+    @Test
+    public void shouldUpdateCurrentPriceAndFirstPriceDateWhenPriceIsAdded() {
+        //given
+        NavigableSet<Price> nsPrices = PriceHelper.convertToNavigableSet(testProduct.getPrices());
+        Price newestPrice = Price.builder().fromDate(nsPrices.last().getFromDate().plusDays(1)).price(BigDecimal.ONE).build();
+        Price oldestPrice = Price.builder().fromDate(nsPrices.first().getFromDate().minusDays(1)).price(BigDecimal.TEN).build();
+
+        //when
+        testProduct.addPrice(newestPrice);
+        testProduct.addPrice(oldestPrice);
+
+        //then
+        assertThat(testProduct.getCurrentPrice()).isEqualTo(newestPrice);
+        assertThat(testProduct.getFirstPriceDate()).isEqualTo(oldestPrice.getFromDate());
+    }
+
+    @Test
+    public void shouldHaveNoCurrentPriceWithoutPrices() {
+        //given
+        Product product = Product.builder().name("Product 9").build();
+
+        //then
+        assertThat(product.getCurrentPrice()).isNull();
+        assertThat(product.getFirstPriceDate()).isNull();
+    }
+}
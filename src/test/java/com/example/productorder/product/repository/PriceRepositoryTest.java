@@ -0,0 +1,83 @@
+package com.example.productorder.product.repository;
+
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.domain.ProductPrice;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class PriceRepositoryTest {
+
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 10, 30);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PriceRepository priceRepository;
+
+    @Before
+    public void setUp() {
+        //yearly prices 1.00, 2.00, ... so the price tells from which year it is
+        for (String productName : Arrays.asList("Product 1", "Product 2")) {
+            Product product = Product.builder().name(productName).prices(new HashSet<>()).build();
+            for (int year = 0; year < 10; year++) {
+                product.addPrice(Price.builder()
+                                      .price(BigDecimal.valueOf(year + 1).setScale(2))
+                                      .fromDate(FIRST_PRICE_DATE.plusYears(year))
+                                      .build());
+            }
+            entityManager.persist(product);
+        }
+        entityManager.persist(Product.builder().name("Product 3").prices(new HashSet<>()).build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void shouldFindNewestPriceNotAfterDate() {
+        //when
+        List<Price> prices = priceRepository.findPricesOfProductNotAfter("Product 1", FIRST_PRICE_DATE.plusYears(3).plusDays(1), PageRequest.of(0, 1));
+        List<Price> pricesOnFromDate = priceRepository.findPricesOfProductNotAfter("Product 1", FIRST_PRICE_DATE.plusYears(3), PageRequest.of(0, 1));
+
+        //then
+        assertThat(prices).extracting(Price::getPrice).containsExactly(new BigDecimal("4.00"));
+        assertThat(pricesOnFromDate).extracting(Price::getPrice).containsExactly(new BigDecimal("4.00"));
+    }
+
+    @Test
+    public void shouldNotFindPriceBeforeFirstPriceOrOfUnknownProduct() {
+        //then
+        assertThat(priceRepository.findPricesOfProductNotAfter("Product 1", FIRST_PRICE_DATE.minusDays(1), PageRequest.of(0, 1))).isEmpty();
+        assertThat(priceRepository.findPricesOfProductNotAfter("Product 3", FIRST_PRICE_DATE, PageRequest.of(0, 1))).isEmpty();
+        assertThat(priceRepository.findPricesOfProductNotAfter("Product 4", FIRST_PRICE_DATE, PageRequest.of(0, 1))).isEmpty();
+    }
+
+    @Test
+    public void shouldFindPricesOfManyProductsAtDate() {
+        //when
+        List<ProductPrice> productPrices = priceRepository.findPricesOfProductsAt(Arrays.asList("Product 1", "Product 2", "Product 3", "Product 4"), FIRST_PRICE_DATE.plusYears(5).plusMonths(6));
+
+        //then
+        assertThat(productPrices).extracting(ProductPrice::getProductName, productPrice -> productPrice.getPrice().getPrice())
+                                 .containsExactlyInAnyOrder(tuple("Product 1", new BigDecimal("6.00")),
+                                                            tuple("Product 2", new BigDecimal("6.00")));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.productorder.product.repository;
+
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class ProductRepositoryTest {
+
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 10, 30);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    public void shouldKeepCurrentPriceWhenPriceIsAddedToSavedProduct() {
+        //given
+        Product product = Product.builder().name("Product 1").prices(new HashSet<>()).build();
+        product.addPrice(Price.builder().price(BigDecimal.ONE).fromDate(FIRST_PRICE_DATE).build());
+        entityManager.persist(product);
+        entityManager.flush();
+        entityManager.clear();
+
+        //when
+        Product savedProduct = productRepository.findProductByName("Product 1").get();
+        //price is saved before it is added, like on current price update
+        savedProduct.addPrice(entityManager.persist(Price.builder().price(BigDecimal.TEN).fromDate(FIRST_PRICE_DATE.plusYears(1)).build()));
+        productRepository.save(savedProduct);
+        entityManager.flush();
+        entityManager.clear();
+
+        //then
+        Product productWithCurrentPrice = productRepository.findWithCurrentPriceByName("Product 1").get();
+        assertThat(Persistence.getPersistenceUtil().isLoaded(productWithCurrentPrice, "prices")).isFalse();
+        assertThat(productWithCurrentPrice.getCurrentPrice().getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(productWithCurrentPrice.getFirstPriceDate()).isEqualTo(FIRST_PRICE_DATE);
+    }
+
+    @Test
+    public void shouldFindProductWithoutPrices() {
+        //given
+        entityManager.persist(Product.builder().name("Product 2").prices(new HashSet<>()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        //when
+        Product product = productRepository.findWithCurrentPriceByName("Product 2").get();
+
+        //then
+        assertThat(product.getCurrentPrice()).isNull();
+        assertThat(product.getFirstPriceDate()).isNull();
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.productorder.product.service;
 
 import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.PriceOnDateInfo;
 import com.example.productorder.product.domain.PriceUpdateInfo;
+import com.example.productorder.product.domain.ProductPrice;
 import com.example.productorder.product.repository.PriceRepository;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,14 +11,24 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 
 import static com.example.productorder.TestData.prepareProducts;
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -45,4 +57,40 @@ public class PriceServiceTest {
         //then
         assertThat(priceService.save(priceUpdateInfo)).isEqualTo(p);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturnPriceOfProductAtDate() {
+        //given
+        Price p = testPrices.get(0);
+        LocalDateTime at = p.getFromDate().plusDays(1);
+        given(priceRepository.findPricesOfProductNotAfter("Product 1", at, PageRequest.of(0, 1))).willReturn(Collections.singletonList(p));
+
+        //then
+        assertThat(priceService.getPriceOfProductAt("Product 1", at)).isEqualTo(Optional.of(p));
+        assertThat(priceService.getPriceOfProductAt("Product 2", at)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void shouldReturnPricesOfProductsAtDatesInRequestedOrder() {
+        //given
+        Price p1 = testPrices.get(0);
+        Price p2 = testPrices.get(1);
+        LocalDateTime firstDate = LocalDateTime.of(2000, 1, 1, 10, 30);
+        LocalDateTime secondDate = LocalDateTime.of(2010, 1, 1, 10, 30);
+        given(priceRepository.findPricesOfProductsAt(new HashSet<>(Arrays.asList("Product 1", "Product 2", "Product 3")), firstDate))
+                .willReturn(Arrays.asList(new ProductPrice("Product 1", p1), new ProductPrice("Product 2", p2)));
+        given(priceRepository.findPricesOfProductsAt(Collections.singleton("Product 1"), secondDate))
+                .willReturn(Collections.singletonList(new ProductPrice("Product 1", p2)));
+
+        //when
+        List<PriceOnDateInfo> prices = priceService.getPricesOfProductsAt(Arrays.asList(new PriceOnDateInfo("Product 2", firstDate, null),
+                                                                                        new PriceOnDateInfo("Product 1", secondDate, null),
+                                                                                        new PriceOnDateInfo("Product 3", firstDate, null),
+                                                                                        new PriceOnDateInfo("Product 1", firstDate, null)));
+
+        //then
+        assertThat(prices).extracting(PriceOnDateInfo::getPrice).containsExactly(p2, p2, null, p1);
+        verify(priceRepository, times(1)).findPricesOfProductsAt(any(), eq(firstDate));
+        verify(priceRepository, times(1)).findPricesOfProductsAt(any(), eq(secondDate));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.productorder.product.service;
+
+import com.example.productorder.product.domain.Price;
+import com.example.productorder.product.domain.Product;
+import com.example.productorder.product.repository.PriceRepository;
+import com.example.productorder.product.repository.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//every call runs in its own transaction like in the application, cache is filled on commit
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+public class ProductSecondLevelCacheTest {
+
+    private static final LocalDateTime FIRST_PRICE_DATE = LocalDateTime.of(2000, 1, 1, 10, 30);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PriceRepository priceRepository;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        Product product = Product.builder().name("Cached product").prices(new HashSet<>()).build();
+        for (int year = 0; year < 5; year++) {
+            product.addPrice(Price.builder().price(BigDecimal.valueOf(year + 1)).fromDate(FIRST_PRICE_DATE.plusYears(year)).build());
+        }
+        productService.save(product);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() {
+        productRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+        productCache.invalidateAll();
+    }
+
+    @Test
+    public void shouldReadProductWithPricesFromCacheOnRepeatedLookup() {
+        //given
+        productService.getProductByName("Cached product");
+        productCache.invalidateAll();
+        long statementsAfterFirstLookup = statistics.getPrepareStatementCount();
+
+        //when
+        Product product = productService.getProductByName("Cached product").get();
+
+        //then
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsAfterFirstLookup);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheStatistics("products").getHitCount()).isPositive();
+        assertThat(statistics.getSecondLevelCacheStatistics("product-prices").getHitCount()).isPositive();
+        assertThat(statistics.getSecondLevelCacheStatistics("prices").getHitCount()).isPositive();
+        assertThat(Persistence.getPersistenceUtil().isLoaded(product, "prices")).isTrue();
+        assertThat(product.getPriceTimeline().last().getFromDate()).isEqualTo(FIRST_PRICE_DATE.plusYears(4));
+        assertThat(product.getCurrentPrice().getFromDate()).isEqualTo(FIRST_PRICE_DATE.plusYears(4));
+    }
+
+    @Test
+    public void shouldSeeNewPriceAfterPriceUpdate() {
+        //given
+        Product product = productService.getProductByName("Cached product").get();
+
+        //when
+        product.addPrice(priceRepository.save(Price.builder().price(BigDecimal.TEN).fromDate(FIRST_PRICE_DATE.plusYears(10)).build()));
+        productService.save(product);
+
+        //then
+        Product updatedProduct = productService.getProductByName("Cached product").get();
+        assertThat(updatedProduct.getPrices()).hasSize(6);
+        assertThat(updatedProduct.getCurrentPrice().getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+}
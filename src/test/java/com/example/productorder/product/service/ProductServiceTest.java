@@ -1,10 +1,13 @@
 package com.example.productorder.product.service;
 
+import com.example.productorder.order.domain.OrderInfo;
+import com.example.productorder.order.service.OrderWhatIfCache;
 import com.example.productorder.product.domain.Price;
 import com.example.productorder.product.domain.Product;
 import com.example.productorder.product.domain.ProductInfo;
 import com.example.productorder.product.helper.PriceHelper;
 import com.example.productorder.product.helper.ProductHelper;
+import com.example.productorder.product.repository.PriceRepository;
 import com.example.productorder.product.repository.ProductRepository;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,15 +16,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static com.example.productorder.TestData.prepareProducts;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -30,14 +37,27 @@ public class ProductServiceTest {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private OrderWhatIfCache orderWhatIfCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @MockBean
     private ProductRepository productRepository;
 
+    @MockBean
+    private PriceRepository priceRepository;
+
     private List<Product> testProducts;
 
     @Before
     public void setUp() throws Exception {
         testProducts = prepareProducts();
+        productCache.invalidateAll();
     }
 
     @Test
@@ -91,25 +111,117 @@ public class ProductServiceTest {
     }
 
     @Test
-    public void shouldReturnTrueWhenAllProductsExists() {
+    public void shouldReturnCachedProduct() {
         //given
-        Set<String> testProductsNames = new HashSet<>(testProducts.stream().map(product -> product.getName()).collect(Collectors.toSet()));
-        Long testProductsSize = (long) testProducts.size();
-        given(productRepository.countProductsByNameIsIn(testProductsNames)).willReturn(testProductsSize);
+        Product p = testProducts.get(0);
+        given(productRepository.findProductByName(p.getName())).willReturn(Optional.of(p));
+        long hitCount = productCache.stats().hitCount();
+
+        //when
+        productService.getProductByName(p.getName());
+        productService.getProductByName(p.getName());
 
         //then
-        assertThat(productService.checkIfAllProductsExists(testProductsNames)).isTrue();
+        verify(productRepository, times(1)).findProductByName(p.getName());
+        assertThat(productCache.stats().hitCount() - hitCount).isEqualTo(1L);
     }
 
     @Test
-    public void shouldReturnFalseWhenAnyOfTheProductsDoesNotExists() {
+    public void shouldReloadProductAfterSave() {
         //given
-        Set<String> testProductsNames = new HashSet<>(testProducts.stream().map(product -> product.getName()).collect(Collectors.toSet()));
-        Long testProductsSize = (long) testProducts.size();
-        given(productRepository.countProductsByNameIsIn(testProductsNames)).willReturn(0L);
+        Product p = testProducts.get(0);
+        given(productRepository.findProductByName(p.getName())).willReturn(Optional.of(p));
+        given(productRepository.save(p)).willReturn(p);
+
+        //when
+        productService.getProductByName(p.getName());
+        productService.save(p);
+        productService.getProductByName(p.getName());
 
         //then
-        assertThat(productService.checkIfAllProductsExists(testProductsNames)).isFalse();
+        verify(productRepository, times(2)).findProductByName(p.getName());
+    }
+
+    @Test
+    public void shouldAddPriceToReloadedProductAndNotToCachedOne() {
+        //given
+        Product cachedProduct = testProducts.get(0);
+        Product reloadedProduct = prepareProducts().get(0);
+        given(productRepository.findProductByName(cachedProduct.getName())).willReturn(Optional.of(cachedProduct), Optional.of(reloadedProduct));
+        productService.getProductByName(cachedProduct.getName());
+        int cachedPrices = cachedProduct.getPrices().size();
+        Price newPrice = Price.builder()
+                              .price(BigDecimal.TEN)
+                              .fromDate(PriceHelper.convertToNavigableSet(cachedProduct.getPrices()).last().getFromDate().plusDays(1))
+                              .build();
+
+        //when
+        given(priceRepository.save(newPrice)).willReturn(newPrice);
+        Optional<Product> updatedProduct = productService.addPrice(cachedProduct.getName(), newPrice);
+
+        //then
+        assertThat(updatedProduct).containsSame(reloadedProduct);
+        assertThat(reloadedProduct.getCurrentPrice()).isSameAs(newPrice);
+        assertThat(cachedProduct.getPrices()).hasSize(cachedPrices);
+        assertThat(productService.getProductByName(cachedProduct.getName())).containsSame(reloadedProduct);
+    }
+
+    @Test
+    public void shouldDropWhatIfResultsOfProductOnlyAfterPriceIsCommitted() {
+        //given
+        Product product = testProducts.get(0);
+        given(productRepository.findProductByName(product.getName())).willReturn(Optional.of(product));
+        Price lastPrice = PriceHelper.convertToNavigableSet(product.getPrices()).last();
+        LocalDateTime date = lastPrice.getFromDate().plusDays(2);
+        orderWhatIfCache.put(1L, date, OrderInfo.builder().email("customer1@cp.pc").orderDate(date).orderSum(BigDecimal.TEN).build(), Collections.singletonMap(product.getName(), lastPrice));
+        Price newPrice = Price.builder()
+                              .price(BigDecimal.TEN)
+                              .fromDate(lastPrice.getFromDate().plusDays(1))
+                              .build();
+        given(priceRepository.save(newPrice)).willReturn(newPrice);
+
+        //when
+        new TransactionTemplate(transactionManager).execute(status -> {
+            productService.addPrice(product.getName(), newPrice);
+
+            //then
+            assertThat(orderWhatIfCache.get(1L, date)).isPresent();
+            return null;
+        });
+
+        //then
+        assertThat(orderWhatIfCache.get(1L, date)).isEmpty();
+    }
+
+    @Test
+    public void shouldNotCacheMissingProduct() {
+        //given
+        given(productRepository.findProductByName("notExistingProduct")).willReturn(Optional.empty());
+
+        //when
+        productService.getProductByName("notExistingProduct");
+        productService.getProductByName("notExistingProduct");
+
+        //then
+        verify(productRepository, times(2)).findProductByName("notExistingProduct");
+    }
+
+    @Test
+    public void shouldLoadOnlyMissingProductsInOneQuery() {
+        //given
+        Product cached = testProducts.get(0);
+        Product missing = testProducts.get(1);
+        given(productRepository.findProductByName(cached.getName())).willReturn(Optional.of(cached));
+        Set<String> missingNames = new HashSet<>(Arrays.asList(missing.getName(), "notExistingProduct"));
+        given(productRepository.findByNameIn(missingNames)).willReturn(Collections.singleton(missing));
+        productService.getProductByName(cached.getName());
+
+        //when
+        Map<String, Product> products = productService.getProductsByNames(new HashSet<>(Arrays.asList(cached.getName(), missing.getName(), "notExistingProduct")));
+
+        //then
+        verify(productRepository, times(1)).findByNameIn(missingNames);
+        assertThat(products).containsOnlyKeys(cached.getName(), missing.getName());
     }
 
     @Test
@@ -132,5 +244,31 @@ public class ProductServiceTest {
         assertThat(productService.checkIfAllProductsHavePriceOnDate(testProductsSet, testPricesSet.first().getFromDate())).isFalse();
     }
 
+    @Test
+    public void shouldBackfillPriceSummaryOfProductsPersistedWithoutIt() {
+        //given
+        Product p = testProducts.get(0);
+        Product productWithoutSummary = new Product(p.getId(), p.getName(), p.getPrices(), null, null);
+        given(productRepository.findNamesWithoutPriceSummary(any())).willReturn(Collections.singletonList(p.getName()));
+        given(productRepository.findByNameIn(Collections.singletonList(p.getName()))).willReturn(Collections.singleton(productWithoutSummary));
+
+        //when
+        int backfilledProducts = productService.backfillPriceSummaries();
+
+        //then
+        assertThat(backfilledProducts).isEqualTo(1);
+        assertThat(productWithoutSummary.getCurrentPrice()).isEqualTo(p.getCurrentPrice());
+        assertThat(productWithoutSummary.getFirstPriceDate()).isEqualTo(p.getFirstPriceDate());
+        verify(productRepository, times(1)).saveAll(Collections.singleton(productWithoutSummary));
+    }
+
+    @Test
+    public void shouldNotBackfillWhenAllProductsHavePriceSummary() {
+        //given
+        given(productRepository.findNamesWithoutPriceSummary(any())).willReturn(Collections.emptyList());
 
-}
\ No newline at end of file
+        //then
+        assertThat(productService.backfillPriceSummaries()).isZero();
+        verify(productRepository, times(0)).findByNameIn(any());
+    }
+}